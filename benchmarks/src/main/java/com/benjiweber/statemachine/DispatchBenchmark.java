@@ -0,0 +1,40 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    OrderStatus state = new Refunded();
+    Dispatcher<OrderStatus, Integer> dispatcher = State.<OrderStatus, Integer>matcher(OrderStatus.class)
+        .when(Pending::new, pending -> 1)
+        .when(CheckingOut::new, checkingOut -> 2)
+        .when(Purchased::new, purchased -> 3)
+        .when(Shipped::new, shipped -> 4)
+        .when(Refunded::new, refunded -> 5)
+        .orElse(other -> 0);
+
+    @Benchmark
+    public int when_chain() {
+        int[] result = {0};
+        state.when(Pending::new, pending -> result[0] = 1);
+        state.when(CheckingOut::new, checkingOut -> result[0] = 2);
+        state.when(Purchased::new, purchased -> result[0] = 3);
+        state.when(Shipped::new, shipped -> result[0] = 4);
+        state.when(Refunded::new, refunded -> result[0] = 5);
+        return result[0];
+    }
+
+    @Benchmark
+    public int dispatcher() {
+        return dispatcher.apply(state);
+    }
+}
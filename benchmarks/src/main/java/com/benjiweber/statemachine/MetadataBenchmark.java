@@ -0,0 +1,39 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataBenchmark {
+
+    OrderStatus shipped = new Shipped();
+    String name = "Shipped";
+
+    @Benchmark
+    public int ordinal() {
+        return shipped.ordinal();
+    }
+
+    @Benchmark
+    public Class<OrderStatus> value_of() {
+        return State.valueOf(OrderStatus.class, name);
+    }
+
+    @Benchmark
+    public String name() {
+        return shipped.name();
+    }
+
+    @Benchmark
+    public List<Class<?>> valid_transition_types() {
+        return shipped.validTransitionTypes();
+    }
+}
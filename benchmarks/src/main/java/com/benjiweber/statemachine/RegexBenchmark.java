@@ -0,0 +1,47 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.RegexExample.APlusB;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss16m")
+public class RegexBenchmark {
+
+    @Param({"64", "1024"})
+    int length;
+
+    String matching;
+    String notMatching;
+
+    @Setup
+    public void input() {
+        matching = "A".repeat(length - 1) + "B";
+        notMatching = "A".repeat(length / 2) + "C" + "A".repeat(length - length / 2 - 1);
+    }
+
+    @Benchmark
+    public APlusB match() {
+        return APlusB.match(matching);
+    }
+
+    @Benchmark
+    public APlusB no_match() {
+        return APlusB.match(notMatching);
+    }
+
+    @Benchmark
+    public APlusB compiled_match() {
+        return RegexExample.compiled.match(matching);
+    }
+
+    @Benchmark
+    public APlusB compiled_no_match() {
+        return RegexExample.compiled.match(notMatching);
+    }
+}
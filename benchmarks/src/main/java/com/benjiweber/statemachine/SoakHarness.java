@@ -0,0 +1,257 @@
+package com.benjiweber.statemachine;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+public final class SoakHarness<T extends State<T>> {
+    private final Class<T> stateMachineType;
+    private final Supplier<? extends T> initial;
+    private final int entities;
+    private final int threads;
+    private final long operationsPerThread;
+    private final long seed;
+    private final double invalidRatio;
+
+    private SoakHarness(Builder<T> builder) {
+        this.stateMachineType = builder.stateMachineType;
+        this.initial = builder.initial;
+        this.entities = builder.entities;
+        this.threads = builder.threads;
+        this.operationsPerThread = builder.operationsPerThread;
+        this.seed = builder.seed;
+        this.invalidRatio = builder.invalidRatio;
+    }
+
+    public static <T extends State<T>> Builder<T> builder(Class<T> stateMachineType, Supplier<? extends T> initial) {
+        return new Builder<>(stateMachineType, initial);
+    }
+
+    public Report run() throws InterruptedException, ExecutionException {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        try {
+            List<Future<Walker>> walkers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int slice = entities / threads + (t < entities % threads ? 1 : 0);
+                Walker walker = new Walker(slice, new SplittableRandom(seed + t), threadBean);
+                walkers.add(workers.submit(() -> {
+                    start.await();
+                    walker.walk();
+                    return walker;
+                }));
+            }
+            long gcCount = gcCount(collectors);
+            long gcMillis = gcMillis(collectors);
+            await(start);
+            long began = System.nanoTime();
+            long transitions = 0;
+            long rejections = 0;
+            long allocated = 0;
+            LatencyHistogram.Snapshot latency = null;
+            for (Future<Walker> future : walkers) {
+                Walker walker = future.get();
+                transitions += walker.transitions;
+                rejections += walker.rejections;
+                allocated += walker.allocatedBytes;
+                latency = latency == null ? walker.latency.snapshot() : latency.merge(walker.latency.snapshot());
+            }
+            long elapsed = System.nanoTime() - began;
+            return new Report(transitions, rejections, elapsed, latency, allocated,
+                gcCount(collectors) - gcCount, gcMillis(collectors) - gcMillis);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private final class Walker {
+        private final List<T> states;
+        private final SplittableRandom random;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final com.sun.management.ThreadMXBean threadBean;
+        private final Class<T>[] values = State.values(stateMachineType);
+        long transitions;
+        long rejections;
+        long allocatedBytes;
+
+        Walker(int entities, SplittableRandom random, com.sun.management.ThreadMXBean threadBean) {
+            this.states = new ArrayList<>(entities);
+            this.random = random;
+            this.threadBean = threadBean;
+            for (int i = 0; i < entities; i++) {
+                states.add(initial.get());
+            }
+        }
+
+        void walk() {
+            long thread = Thread.currentThread().getId();
+            long allocatedBefore = threadBean.getThreadAllocatedBytes(thread);
+            for (long op = 0; op < operationsPerThread && !states.isEmpty(); op++) {
+                int entity = random.nextInt(states.size());
+                T from = states.get(entity);
+                List<Class<?>> valid = from.validTransitionTypes();
+                if (valid.isEmpty()) {
+                    states.set(entity, initial.get());
+                    continue;
+                }
+                Class<? extends T> target = random.nextDouble() < invalidRatio
+                    ? values[random.nextInt(values.length)]
+                    : valid.get(random.nextInt(valid.size())).asSubclass(stateMachineType);
+                boolean rejected = !valid.contains(target);
+                long began = System.nanoTime();
+                T to = from.tryTransition(target).ignoreIfInvalid();
+                latency.record(System.nanoTime() - began);
+                if (rejected) {
+                    rejections++;
+                } else {
+                    transitions++;
+                }
+                states.set(entity, to);
+            }
+            allocatedBytes = threadBean.getThreadAllocatedBytes(thread) - allocatedBefore;
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) throws InterruptedException {
+        try {
+            barrier.await();
+        } catch (BrokenBarrierException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long gcCount(List<GarbageCollectorMXBean> collectors) {
+        return collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(count -> count > 0).sum();
+    }
+
+    private static long gcMillis(List<GarbageCollectorMXBean> collectors) {
+        return collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(time -> time > 0).sum();
+    }
+
+    public static final class Report {
+        public final long transitions;
+        public final long rejections;
+        public final long elapsedNanos;
+        public final LatencyHistogram.Snapshot latency;
+        public final long allocatedBytes;
+        public final long gcCount;
+        public final long gcMillis;
+
+        Report(long transitions, long rejections, long elapsedNanos, LatencyHistogram.Snapshot latency,
+               long allocatedBytes, long gcCount, long gcMillis) {
+            this.transitions = transitions;
+            this.rejections = rejections;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        public double operationsPerSecond() {
+            return (transitions + rejections) * 1e9 / elapsedNanos;
+        }
+
+        public double allocatedBytesPerOperation() {
+            long operations = transitions + rejections;
+            return operations == 0 ? 0 : (double) allocatedBytes / operations;
+        }
+
+        public double allocationRateMbPerSecond() {
+            return allocatedBytes * 1e9 / elapsedNanos / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%,d transitions, %,d rejections in %.2fs%n"
+                    + "throughput  %,.0f ops/s%n"
+                    + "latency ns  %s%n"
+                    + "allocation  %.1f MB/s, %.1f bytes/op%n"
+                    + "gc          %d collections, %d ms",
+                transitions, rejections, elapsedNanos / 1e9,
+                operationsPerSecond(),
+                latency,
+                allocationRateMbPerSecond(), allocatedBytesPerOperation(),
+                gcCount, gcMillis);
+        }
+    }
+
+    public static final class Builder<T extends State<T>> {
+        private final Class<T> stateMachineType;
+        private final Supplier<? extends T> initial;
+        private int entities = 10_000;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private long operationsPerThread = 1_000_000;
+        private long seed = 1;
+        private double invalidRatio;
+
+        private Builder(Class<T> stateMachineType, Supplier<? extends T> initial) {
+            this.stateMachineType = stateMachineType;
+            this.initial = initial;
+        }
+
+        public Builder<T> entities(int entities) {
+            this.entities = entities;
+            return this;
+        }
+
+        public Builder<T> threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public Builder<T> operationsPerThread(long operationsPerThread) {
+            this.operationsPerThread = operationsPerThread;
+            return this;
+        }
+
+        public Builder<T> seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder<T> invalidRatio(double invalidRatio) {
+            this.invalidRatio = invalidRatio;
+            return this;
+        }
+
+        public SoakHarness<T> build() {
+            return new SoakHarness<>(this);
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        Class<?> type = Class.forName(args.length > 0 ? args[0] : TrafficLightExample.TrafficLight.class.getName());
+        run(type, args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends State<T>> void run(Class<?> type, String... args) throws Exception {
+        if (!State.class.isAssignableFrom(type)) {
+            throw new IllegalArgumentException(type.getName() + " is not a state machine.");
+        }
+        Class<T> stateMachineType = (Class<T>) type;
+        for (Class<T> state : State.values(stateMachineType)) {
+            if (state.isMemberClass() && !Modifier.isStatic(state.getModifiers())) {
+                throw new IllegalArgumentException(state.getName() + " is an inner class. The harness creates states "
+                    + "from their Class alone, so it can only drive machines whose states are all static.");
+            }
+        }
+        NextState<T> initial = NextState.of(State.values(stateMachineType)[0]);
+        SoakHarness<T> harness = builder(stateMachineType, initial)
+            .threads(args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors())
+            .operationsPerThread(args.length > 2 ? Long.parseLong(args[2]) : 10_000_000)
+            .seed(args.length > 3 ? Long.parseLong(args[3]) : 1)
+            .invalidRatio(args.length > 4 ? Double.parseDouble(args[4]) : 0.05)
+            .build();
+        System.out.println(harness.run());
+    }
+}
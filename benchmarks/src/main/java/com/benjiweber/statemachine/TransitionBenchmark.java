@@ -0,0 +1,77 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import com.benjiweber.statemachine.TrafficLightExample.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransitionBenchmark {
+
+    Green green = new Green();
+    OrderStatus pending = new Pending();
+
+    @Benchmark
+    public Green typed_transition_chain() {
+        return green
+            .transition(SolidAmber::new)
+            .transition(Red::new)
+            .transition(FlashingAmber::new)
+            .transition(Green::new);
+    }
+
+    @Benchmark
+    public OrderStatus try_transition_unchecked() {
+        return pending
+            .tryTransition(CheckingOut::new)
+            .unchecked();
+    }
+
+    @Benchmark
+    public OrderStatus try_transition_by_name() {
+        return pending
+            .tryTransition("CheckingOut")
+            .unchecked();
+    }
+
+    @Benchmark
+    public OrderStatus ignore_if_invalid_on_invalid_path() {
+        return pending
+            .tryTransition(Refunded::new)
+            .ignoreIfInvalid();
+    }
+
+    @Benchmark
+    public OrderStatus transition_or_same_on_invalid_path() {
+        return pending.transitionOrSame(Refunded::new);
+    }
+
+    @Benchmark
+    public OrderStatus unchecked_on_invalid_path() {
+        try {
+            return pending
+                .tryTransition(Refunded::new)
+                .unchecked();
+        } catch (State.InvalidStateTransitionException e) {
+            return pending;
+        }
+    }
+
+    @Benchmark
+    public boolean is_in_state() {
+        return pending.isInState(Pending::new);
+    }
+
+    @Benchmark
+    public void when(Blackhole blackhole) {
+        pending.when(CheckingOut::new, blackhole::consume);
+        pending.when(Pending::new, blackhole::consume);
+    }
+}
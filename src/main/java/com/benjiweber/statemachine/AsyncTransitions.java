@@ -0,0 +1,193 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.State.InvalidStateTransitionException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public final class AsyncTransitions {
+    private static final int PENDING = 0;
+    private static final int PUBLISHED = 1;
+    private static final int CANCELLED = 2;
+    private static final int ABANDONED = 3;
+
+    private final Executor executor;
+    private final ConcurrentHashMap<Object, Lane> lanes = new ConcurrentHashMap<>();
+
+    public AsyncTransitions(Executor executor) {
+        this.executor = executor;
+    }
+
+    public <T extends State<T>, DESIRED extends T> CompletableFuture<DESIRED> transition(AtomicState<T> state, NextState<DESIRED> desired) {
+        TransitionEvent event = Guards.begin();
+        DESIRED next = null;
+        while (true) {
+            T from = state.get();
+            if (!from.canTransitionTo(desired)) {
+                TransitionListeners.rejected(from, desired.type());
+                return CompletableFuture.failedFuture(new InvalidStateTransitionException());
+            }
+            if (next == null) {
+                next = desired.get();
+            }
+            DESIRED to = next;
+            long start = System.nanoTime();
+            try {
+                if (!Guards.hasSideEffects(from, to)) {
+                    if (Guards.apply(event, from, to, () -> state.compareAndSet(from, to))) {
+                        return CompletableFuture.completedFuture(to);
+                    }
+                    continue;
+                }
+                SideEffects<DESIRED> effects = new SideEffects<>(event, from, to);
+                reserve(state, effects);
+                boolean published = false;
+                try {
+                    published = Guards.applySynchronous(from, to, () -> state.compareAndSet(from, to));
+                } finally {
+                    decided(state, effects, published, start);
+                }
+                if (published) {
+                    return effects.completion;
+                }
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
+
+    public int pendingEntities() {
+        return lanes.size();
+    }
+
+    private void reserve(Object entity, SideEffects<?> effects) {
+        lanes.compute(entity, (key, lane) -> {
+            if (lane == null) {
+                lane = new Lane();
+            }
+            lane.pending.add(effects);
+            return lane;
+        });
+    }
+
+    private void decided(Object entity, SideEffects<?> effects, boolean published, long start) {
+        effects.synchronousNanos = System.nanoTime() - start;
+        boolean[] schedule = new boolean[1];
+        lanes.computeIfPresent(entity, (key, lane) -> {
+            if (effects.status == ABANDONED) {
+                return lane;
+            }
+            effects.status = published ? PUBLISHED : CANCELLED;
+            while (!lane.pending.isEmpty() && lane.pending.peekFirst().status == CANCELLED) {
+                lane.pending.pollFirst();
+            }
+            if (lane.pending.isEmpty()) {
+                return lane.scheduled ? lane : null;
+            }
+            if (!lane.scheduled && lane.pending.peekFirst().status == PUBLISHED) {
+                lane.scheduled = true;
+                schedule[0] = true;
+            }
+            return lane;
+        });
+        if (schedule[0]) {
+            try {
+                executor.execute(() -> drain(entity));
+            } catch (RejectedExecutionException e) {
+                failPending(entity, e);
+            }
+        }
+    }
+
+    private void drain(Object entity) {
+        SideEffects<?>[] batch;
+        while ((batch = takeBatch(entity)) != null) {
+            for (int i = 0; i < batch.length; i++) {
+                try {
+                    batch[i].run();
+                } catch (Throwable e) {
+                    failPending(entity, e);
+                    for (int j = i; j < batch.length; j++) {
+                        batch[j].completion.completeExceptionally(e);
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void failPending(Object entity, Throwable cause) {
+        Lane[] failed = new Lane[1];
+        lanes.computeIfPresent(entity, (key, lane) -> {
+            for (SideEffects<?> effects : lane.pending) {
+                effects.status = ABANDONED;
+            }
+            failed[0] = lane;
+            return null;
+        });
+        if (failed[0] != null) {
+            for (SideEffects<?> effects : failed[0].pending) {
+                effects.completion.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private SideEffects<?>[] takeBatch(Object entity) {
+        SideEffects<?>[][] batch = new SideEffects<?>[1][];
+        lanes.computeIfPresent(entity, (key, lane) -> {
+            List<SideEffects<?>> ready = new ArrayList<>();
+            while (!lane.pending.isEmpty() && lane.pending.peekFirst().status != PENDING) {
+                SideEffects<?> head = lane.pending.pollFirst();
+                if (head.status == PUBLISHED) {
+                    ready.add(head);
+                }
+            }
+            if (ready.isEmpty()) {
+                if (lane.pending.isEmpty()) {
+                    return null;
+                }
+                lane.scheduled = false;
+                return lane;
+            }
+            batch[0] = ready.toArray(new SideEffects<?>[0]);
+            return lane;
+        });
+        return batch[0];
+    }
+
+    private static final class Lane {
+        final ArrayDeque<SideEffects<?>> pending = new ArrayDeque<>();
+        boolean scheduled;
+    }
+
+    private static final class SideEffects<DESIRED extends StateGuards<?>> {
+        final TransitionEvent event;
+        final Object from;
+        final DESIRED next;
+        final CompletableFuture<DESIRED> completion = new CompletableFuture<>();
+        long synchronousNanos;
+        int status = PENDING;
+
+        SideEffects(TransitionEvent event, Object from, DESIRED next) {
+            this.event = event;
+            this.from = from;
+            this.next = next;
+        }
+
+        void run() {
+            try {
+                long start = System.nanoTime();
+                Guards.applySideEffects(from, next);
+                Guards.completed(event, from, next, synchronousNanos + System.nanoTime() - start);
+                completion.complete(next);
+            } catch (RuntimeException e) {
+                completion.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.benjiweber.statemachine;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class AtomicState<T extends State<T>> {
+    private final AtomicReference<T> current;
+
+    public AtomicState(T initial) {
+        this.current = new AtomicReference<>(initial);
+    }
+
+    public T get() {
+        return current.get();
+    }
+
+    public <DESIRED extends T> boolean tryTransition(NextState<DESIRED> desired) {
+        TransitionEvent event = Guards.begin();
+        T next = null;
+        while (true) {
+            T from = current.get();
+            if (!from.canTransitionTo(desired)) {
+                TransitionListeners.rejected(from, desired.type());
+                return false;
+            }
+            if (next == null) {
+                next = desired.get();
+            }
+            if (publish(event, from, next)) {
+                return true;
+            }
+        }
+    }
+
+    public <DESIRED extends T> boolean compareAndTransition(T expected, NextState<DESIRED> desired) {
+        if (current.get() != expected) {
+            return false;
+        }
+        TransitionEvent event = Guards.begin();
+        if (!expected.canTransitionTo(desired)) {
+            TransitionListeners.rejected(expected, desired.type());
+            return false;
+        }
+        return publish(event, expected, desired.get());
+    }
+
+    private boolean publish(TransitionEvent event, T from, T next) {
+        return Guards.apply(event, from, next, () -> current.compareAndSet(from, next));
+    }
+
+    boolean compareAndSet(T expected, T next) {
+        return current.compareAndSet(expected, next);
+    }
+
+    @Override
+    public String toString() {
+        return "AtomicState[" + current.get().name() + "]";
+    }
+}
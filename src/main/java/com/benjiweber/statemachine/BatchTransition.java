@@ -0,0 +1,144 @@
+package com.benjiweber.statemachine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.util.Collections.unmodifiableList;
+
+public final class BatchTransition {
+    private static final int THRESHOLD = 1024;
+
+    private BatchTransition() {}
+
+    public static final class Result<T, DESIRED extends T> {
+        private final List<T> results;
+        private final boolean[] moved;
+        private final List<DESIRED> transitioned;
+        private final List<T> rejected;
+
+        private Result(List<T> results, boolean[] moved, List<DESIRED> transitioned, List<T> rejected) {
+            this.results = unmodifiableList(results);
+            this.moved = moved;
+            this.transitioned = unmodifiableList(transitioned);
+            this.rejected = unmodifiableList(rejected);
+        }
+
+        public List<T> results() {
+            return results;
+        }
+
+        public boolean transitioned(int index) {
+            return moved[index];
+        }
+
+        public List<DESIRED> transitioned() {
+            return transitioned;
+        }
+
+        public List<T> rejected() {
+            return rejected;
+        }
+
+        public int transitionedCount() {
+            return transitioned.size();
+        }
+
+        public int rejectedCount() {
+            return rejected.size();
+        }
+    }
+
+    public static <T extends State<T>, DESIRED extends T> Result<T, DESIRED> apply(
+            Stream<? extends T> states, NextState<DESIRED> desired) {
+        return apply(states.toArray(), desired, ForkJoinPool.commonPool());
+    }
+
+    public static <T extends State<T>, DESIRED extends T> Result<T, DESIRED> apply(
+            Collection<? extends T> states, NextState<DESIRED> desired) {
+        return apply(states, desired, ForkJoinPool.commonPool());
+    }
+
+    public static <T extends State<T>, DESIRED extends T> Result<T, DESIRED> apply(
+            Collection<? extends T> states, NextState<DESIRED> desired, ForkJoinPool pool) {
+        return apply(states.toArray(), desired, pool);
+    }
+
+    // states holds Ts and results holds DESIREDs; only their arrays are untyped.
+    @SuppressWarnings("unchecked")
+    private static <T extends State<T>, DESIRED extends T> Result<T, DESIRED> apply(
+            Object[] states, NextState<DESIRED> desired, ForkJoinPool pool) {
+        Class<DESIRED> target = desired.type();
+        Supplier<DESIRED> next = Flyweights.resolve(desired);
+        Object[] results = new Object[states.length];
+        boolean notifyRejected = Guards.observed();
+        pool.invoke(new Slice(states, results, target, next, notifyRejected, 0, states.length));
+
+        List<T> aligned = new ArrayList<>(states.length);
+        boolean[] moved = new boolean[states.length];
+        List<DESIRED> transitioned = new ArrayList<>();
+        List<T> rejected = new ArrayList<>();
+        for (int i = 0; i < states.length; i++) {
+            moved[i] = results[i] != null;
+            if (moved[i]) {
+                aligned.add((T) results[i]);
+                transitioned.add((DESIRED) results[i]);
+            } else {
+                aligned.add((T) states[i]);
+                rejected.add((T) states[i]);
+            }
+        }
+        return new Result<>(aligned, moved, transitioned, rejected);
+    }
+
+    private static final class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] states;
+        private final Object[] results;
+        private final Class<?> target;
+        private final Supplier<?> next;
+        private final boolean notifyRejected;
+        private final int from;
+        private final int to;
+
+        Slice(Object[] states, Object[] results, Class<?> target, Supplier<?> next, boolean notifyRejected, int from, int to) {
+            this.states = states;
+            this.results = results;
+            this.target = target;
+            this.next = next;
+            this.notifyRejected = notifyRejected;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(
+                    new Slice(states, results, target, next, notifyRejected, from, middle),
+                    new Slice(states, results, target, next, notifyRejected, middle, to)
+                );
+                return;
+            }
+            Class<?> lastType = null;
+            boolean lastPermitted = false;
+            for (int i = from; i < to; i++) {
+                Object state = states[i];
+                if (state.getClass() != lastType) {
+                    lastType = state.getClass();
+                    lastPermitted = TransitionTable.of(lastType).permits(target);
+                }
+                if (lastPermitted) {
+                    results[i] = Guards.apply(state, (StateGuards<?>) next.get());
+                } else if (notifyRejected) {
+                    TransitionListeners.rejected(state, target);
+                }
+            }
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.benjiweber.statemachine;
 
-import java.util.function.Supplier;
-
 @Transition
 public interface BiTransitionTo<T extends StateGuards, U extends StateGuards> extends TransitionTo<T> {
-    interface TwoTransition<T> extends Supplier<T> { }
+    interface TwoTransition<T> extends NextState<T> { }
     default U transition(TwoTransition<U> constructor) {
-        return withGuards(constructor.get());
+        return Guards.transition(this, constructor);
+    }
+
+    default U transitionShared(TwoTransition<U> constructor) {
+        TransitionEvent event = Guards.begin();
+        return Guards.apply(event, this, Flyweights.next(constructor));
     }
 }
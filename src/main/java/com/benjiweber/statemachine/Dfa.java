@@ -0,0 +1,316 @@
+package com.benjiweber.statemachine;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+
+public final class Dfa<T extends State<T>> {
+    private static final int ALPHABET = Character.MAX_VALUE + 1;
+
+    private final StateMachineDescriptor<T> descriptor;
+    private final char[] inputClasses;
+    private final int classes;
+    private final int[] table;
+    private final int[] results;
+    private final int initial;
+
+    public interface Classifier<T> {
+        Class<? extends T> next(char input);
+    }
+
+    private Dfa(StateMachineDescriptor<T> descriptor, char[] inputClasses, int classes, int[] table, int[] results, int initial) {
+        this.descriptor = descriptor;
+        this.inputClasses = inputClasses;
+        this.classes = classes;
+        this.table = table;
+        this.results = results;
+        this.initial = initial;
+    }
+
+    public static <T extends State<T>> Builder<T> builder(Class<T> stateMachineType) {
+        return new Builder<>(StateMachineDescriptor.of(stateMachineType));
+    }
+
+    public T match(CharSequence input) {
+        return instance(resultOrdinal(advance(initial, input, 0, input.length())));
+    }
+
+    public T match(char[] input) {
+        return instance(resultOrdinal(advance(initial, input, 0, input.length)));
+    }
+
+    public T match(byte[] input) {
+        return instance(resultOrdinal(advance(initial, input, 0, input.length)));
+    }
+
+    public Class<T> matchType(CharSequence input) {
+        return descriptor.valueOf(resultOrdinal(advance(initial, input, 0, input.length())));
+    }
+
+    public Class<T> matchType(char[] input) {
+        return descriptor.valueOf(resultOrdinal(advance(initial, input, 0, input.length)));
+    }
+
+    public Class<T> matchType(byte[] input) {
+        return descriptor.valueOf(resultOrdinal(advance(initial, input, 0, input.length)));
+    }
+
+    public StreamingMatcher<T> matcher() {
+        return new StreamingMatcher<>(this);
+    }
+
+    public RecordMatcher<T> records() {
+        return new RecordMatcher<>(this, (byte) '\n');
+    }
+
+    public RecordMatcher<T> records(byte delimiter) {
+        return new RecordMatcher<>(this, delimiter);
+    }
+
+    public int states() {
+        return results.length;
+    }
+
+    StateMachineDescriptor<T> descriptor() {
+        return descriptor;
+    }
+
+    int initial() {
+        return initial;
+    }
+
+    int resultOrdinal(int row) {
+        return results[row / classes];
+    }
+
+    T instance(int ordinal) {
+        return descriptor.sharedInstance(ordinal);
+    }
+
+    int advance(int row, CharSequence input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int next = table[row + inputClasses[input.charAt(i)]];
+            if (next < 0) return ~next;
+            row = next;
+        }
+        return row;
+    }
+
+    int advance(int row, char[] input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int next = table[row + inputClasses[input[i]]];
+            if (next < 0) return ~next;
+            row = next;
+        }
+        return row;
+    }
+
+    int advance(int row, byte[] input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int next = table[row + inputClasses[input[i] & 0xFF]];
+            if (next < 0) return ~next;
+            row = next;
+        }
+        return row;
+    }
+
+    int advance(int row, ByteBuffer input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int next = table[row + inputClasses[input.get(i) & 0xFF]];
+            if (next < 0) return ~next;
+            row = next;
+        }
+        return row;
+    }
+
+    public static final class Builder<T extends State<T>> {
+        private final StateMachineDescriptor<T> descriptor;
+        private final Classifier<T>[] classifiers;
+        private final int[] atEnd;
+        private int start = -1;
+        private boolean minimize;
+
+        @SuppressWarnings({"unchecked", "rawtypes"}) // generic array creation
+        private Builder(StateMachineDescriptor<T> descriptor) {
+            this.descriptor = descriptor;
+            this.classifiers = new Classifier[descriptor.size()];
+            this.atEnd = new int[descriptor.size()];
+            Arrays.setAll(atEnd, ordinal -> ordinal);
+        }
+
+        public Builder<T> start(Class<? extends T> state) {
+            start = ordinalOf(state);
+            return this;
+        }
+
+        public Builder<T> on(Class<? extends T> state, Classifier<T> classifier) {
+            classifiers[ordinalOf(state)] = classifier;
+            return this;
+        }
+
+        public Builder<T> atEnd(Class<? extends T> state, Class<? extends T> result) {
+            int from = ordinalOf(state);
+            atEnd[from] = validTransition(from, ordinalOf(result));
+            return this;
+        }
+
+        public Builder<T> minimize() {
+            minimize = true;
+            return this;
+        }
+
+        public Dfa<T> build() {
+            if (start < 0) {
+                throw new IllegalStateException("No start state for " + descriptor.type().getName());
+            }
+            int[][] next = transitions();
+            int[] reachable = reachableFrom(start, next);
+            int[] index = new int[descriptor.size()];
+            for (int i = 0; i < reachable.length; i++) {
+                index[reachable[i]] = i;
+            }
+
+            char[] inputClasses = new char[ALPHABET];
+            List<int[]> columns = new ArrayList<>();
+            Map<IntBuffer, Integer> byColumn = new HashMap<>();
+            for (int c = 0; c < ALPHABET; c++) {
+                int[] column = new int[reachable.length];
+                for (int i = 0; i < reachable.length; i++) {
+                    column[i] = index[next[reachable[i]][c]];
+                }
+                Integer inputClass = byColumn.get(IntBuffer.wrap(column));
+                if (inputClass == null) {
+                    inputClass = columns.size();
+                    byColumn.put(IntBuffer.wrap(column), inputClass);
+                    columns.add(column);
+                }
+                inputClasses[c] = (char) inputClass.intValue();
+            }
+
+            int[] block = minimize
+                ? minimalBlocks(reachable, columns)
+                : identityBlocks(reachable.length);
+            int blocks = Arrays.stream(block).max().orElse(-1) + 1;
+            int[] representative = new int[blocks];
+            for (int i = reachable.length - 1; i >= 0; i--) {
+                representative[block[i]] = i;
+            }
+
+            int[] classRemap = new int[columns.size()];
+            List<IntBuffer> blockColumns = new ArrayList<>();
+            for (int k = 0; k < columns.size(); k++) {
+                int[] column = new int[blocks];
+                for (int b = 0; b < blocks; b++) {
+                    column[b] = block[columns.get(k)[representative[b]]];
+                }
+                IntBuffer key = IntBuffer.wrap(column);
+                int existing = blockColumns.indexOf(key);
+                classRemap[k] = existing >= 0 ? existing : blockColumns.size();
+                if (existing < 0) blockColumns.add(key);
+            }
+            for (int c = 0; c < ALPHABET; c++) {
+                inputClasses[c] = (char) classRemap[inputClasses[c]];
+            }
+
+            int classes = blockColumns.size();
+            int[] table = new int[blocks * classes];
+            int[] results = new int[blocks];
+            for (int b = 0; b < blocks; b++) {
+                results[b] = atEnd[reachable[representative[b]]];
+                boolean sink = true;
+                for (int k = 0; k < classes; k++) {
+                    sink &= blockColumns.get(k).get(b) == b;
+                }
+                for (int k = 0; k < classes; k++) {
+                    int target = blockColumns.get(k).get(b);
+                    table[b * classes + k] = sink ? ~(target * classes) : target * classes;
+                }
+            }
+            return new Dfa<>(descriptor, inputClasses, classes, table, results, block[index[start]] * classes);
+        }
+
+        private int[][] transitions() {
+            int[][] next = new int[descriptor.size()][ALPHABET];
+            for (int from = 0; from < next.length; from++) {
+                if (classifiers[from] == null) {
+                    Arrays.fill(next[from], from);
+                    continue;
+                }
+                Map<Class<?>, Integer> targets = new HashMap<>();
+                for (int c = 0; c < ALPHABET; c++) {
+                    Class<? extends T> target = classifiers[from].next((char) c);
+                    if (target == null) {
+                        throw new IllegalArgumentException(descriptor.name(from) + " has no next state for input " + c);
+                    }
+                    int source = from;
+                    next[from][c] = targets.computeIfAbsent(target, t -> validTransition(source, ordinalOf(t)));
+                }
+            }
+            return next;
+        }
+
+        private static int[] reachableFrom(int start, int[][] next) {
+            boolean[] seen = new boolean[next.length];
+            Deque<Integer> queue = new ArrayDeque<>(List.of(start));
+            seen[start] = true;
+            List<Integer> reachable = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                reachable.add(state);
+                Arrays.stream(next[state]).distinct().filter(target -> !seen[target]).forEach(target -> {
+                    seen[target] = true;
+                    queue.add(target);
+                });
+            }
+            return reachable.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private int[] identityBlocks(int states) {
+            int[] block = new int[states];
+            Arrays.setAll(block, i -> i);
+            return block;
+        }
+
+        private int[] minimalBlocks(int[] reachable, List<int[]> columns) {
+            int[] block = new int[reachable.length];
+            Map<List<Integer>, Integer> byResult = new HashMap<>();
+            for (int i = 0; i < reachable.length; i++) {
+                block[i] = byResult.computeIfAbsent(List.of(atEnd[reachable[i]]), key -> byResult.size());
+            }
+            int blocks = byResult.size();
+            while (true) {
+                Map<List<Integer>, Integer> bySignature = new HashMap<>();
+                int[] refined = new int[reachable.length];
+                for (int i = 0; i < reachable.length; i++) {
+                    List<Integer> signature = new ArrayList<>(columns.size() + 1);
+                    signature.add(block[i]);
+                    for (int[] column : columns) {
+                        signature.add(block[column[i]]);
+                    }
+                    refined[i] = bySignature.computeIfAbsent(signature, key -> bySignature.size());
+                }
+                if (bySignature.size() == blocks) {
+                    return refined;
+                }
+                block = refined;
+                blocks = bySignature.size();
+            }
+        }
+
+        private int validTransition(int from, int to) {
+            if (from != to && !TransitionTable.of(descriptor.valueOf(from)).permits(descriptor.valueOf(to))) {
+                throw new IllegalArgumentException(
+                    descriptor.name(from) + " cannot transition to " + descriptor.name(to));
+            }
+            return to;
+        }
+
+        private int ordinalOf(Class<?> state) {
+            int ordinal = descriptor.ordinal(state);
+            if (ordinal < 0) {
+                throw new IllegalArgumentException(state.getName() + " is not a state of " + descriptor.type().getName());
+            }
+            return ordinal;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.benjiweber.statemachine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+public final class Dispatcher<T extends State<T>, R> implements Function<T, R> {
+    private final StateMachineDescriptor<T> descriptor;
+    private final Function<Object, ? extends R>[] handlers;
+
+    private Dispatcher(StateMachineDescriptor<T> descriptor, Function<Object, ? extends R>[] handlers) {
+        this.descriptor = descriptor;
+        this.handlers = handlers;
+    }
+
+    public static <T extends State<T>, R> Builder<T, R> builder(Class<T> stateMachineType) {
+        return new Builder<>(StateMachineDescriptor.of(stateMachineType));
+    }
+
+    @Override
+    public R apply(T state) {
+        int ordinal = TransitionTable.of(state.getClass()).ordinal;
+        if (ordinal < 0) {
+            throw new IllegalArgumentException(state.getClass().getName() + " is not a state of " + descriptor.type().getName());
+        }
+        return handlers[ordinal].apply(state);
+    }
+
+    public static final class Builder<T extends State<T>, R> {
+        private final StateMachineDescriptor<T> descriptor;
+        private final Function<Object, ? extends R>[] handlers;
+
+        @SuppressWarnings({"unchecked", "rawtypes"}) // generic array creation
+        private Builder(StateMachineDescriptor<T> descriptor) {
+            this.descriptor = descriptor;
+            this.handlers = new Function[descriptor.size()];
+        }
+
+        public <U extends T> Builder<T, R> when(NextState<U> state, Function<? super U, ? extends R> handler) {
+            return when(state.type(), handler);
+        }
+
+        // A handler is only called with states of the ordinal it is stored under, which are Us.
+        @SuppressWarnings("unchecked")
+        public <U extends T> Builder<T, R> when(Class<U> state, Function<? super U, ? extends R> handler) {
+            int ordinal = descriptor.ordinal(state);
+            if (ordinal < 0) {
+                throw new IllegalArgumentException(state.getName() + " is not a state of " + descriptor.type().getName());
+            }
+            if (handlers[ordinal] != null) {
+                throw new IllegalStateException(descriptor.name(ordinal) + " is already handled");
+            }
+            handlers[ordinal] = (Function<Object, ? extends R>) handler;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked") // only called with Ts
+        public Dispatcher<T, R> orElse(Function<? super T, ? extends R> handler) {
+            Function<Object, ? extends R>[] complete = handlers.clone();
+            for (int ordinal = 0; ordinal < complete.length; ordinal++) {
+                if (complete[ordinal] == null) {
+                    complete[ordinal] = (Function<Object, ? extends R>) handler;
+                }
+            }
+            return new Dispatcher<>(descriptor, complete);
+        }
+
+        public Dispatcher<T, R> build() {
+            List<String> missing = new ArrayList<>();
+            for (int ordinal = 0; ordinal < handlers.length; ordinal++) {
+                if (handlers[ordinal] == null) {
+                    missing.add(descriptor.name(ordinal));
+                }
+            }
+            if (!missing.isEmpty()) {
+                throw new IllegalStateException("Unhandled states of " + descriptor.type().getName() + ": " + missing);
+            }
+            return new Dispatcher<>(descriptor, handlers.clone());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.benjiweber.statemachine;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import java.util.HashSet;
+import java.util.Set;
+
+final class FlightRecording implements FlightRecorderListener {
+    private final Set<Recording> running = new HashSet<>();
+
+    private FlightRecording() {}
+
+    static void install() {
+        FlightRecorder.addListener(new FlightRecording());
+    }
+
+    @Override
+    public void recorderInitialized(FlightRecorder recorder) {
+        recorder.getRecordings().forEach(this::recordingStateChanged);
+    }
+
+    @Override
+    public synchronized void recordingStateChanged(Recording recording) {
+        if (recording.getState() == RecordingState.RUNNING) {
+            running.add(recording);
+        } else {
+            running.remove(recording);
+        }
+        Guards.recording = !running.isEmpty();
+        Guards.observersChanged();
+    }
+}
@@ -0,0 +1,91 @@
+package com.benjiweber.statemachine;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+final class Flyweights {
+    private static final Object NONE = new Object();
+    private static final ClassValue<Object> canonical = new ClassValue<>() {
+        protected Object computeValue(Class<?> stateType) {
+            return canonicalInstance(stateType);
+        }
+    };
+
+    private Flyweights() {}
+
+    static <T> T next(NextState<T> constructor) {
+        Class<T> type = constructor.type();
+        Object instance = canonical.get(type);
+        return instance != NONE ? type.cast(instance) : constructor.get();
+    }
+
+    static <T> Supplier<T> resolve(NextState<T> constructor) {
+        Class<T> type = constructor.type();
+        Object instance = canonical.get(type);
+        if (instance == NONE) {
+            return constructor;
+        }
+        T shared = type.cast(instance);
+        return () -> shared;
+    }
+
+    static <T> T canonical(Class<T> stateType) {
+        Object instance = canonical.get(stateType);
+        return instance != NONE ? stateType.cast(instance) : null;
+    }
+
+    static boolean hasFields(Class<?> stateType) {
+        for (Class<?> cls = stateType; cls != null; cls = cls.getSuperclass()) {
+            if (Stream.of(cls.getDeclaredFields()).anyMatch(field -> !Modifier.isStatic(field.getModifiers()) && !field.isSynthetic())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object canonicalInstance(Class<?> stateType) {
+        if (stateType.isAnnotationPresent(Flyweight.class)) {
+            if (!isStateless(stateType)) {
+                throw new IllegalStateException(stateType.getName() + " is marked @Flyweight but is not stateless.");
+            }
+            return instantiate(stateType);
+        }
+        Class<?> domainType = TransitionTable.of(stateType).domainType;
+        if (domainType != null && domainType.isAnnotationPresent(Flyweight.class) && isStateless(stateType)) {
+            return instantiate(stateType);
+        }
+        return NONE;
+    }
+
+    private static boolean isStateless(Class<?> stateType) {
+        if (stateType.isInterface() || Modifier.isAbstract(stateType.getModifiers())) {
+            return false;
+        }
+        if (stateType.isMemberClass() && !Modifier.isStatic(stateType.getModifiers())) {
+            return false;
+        }
+        if (Stream.of(stateType.getDeclaredConstructors()).noneMatch(c -> c.getParameterCount() == 0)) {
+            return false;
+        }
+        return !hasFields(stateType);
+    }
+
+    private static Object instantiate(Class<?> stateType) {
+        TransitionTable table = TransitionTable.of(stateType);
+        if (table.ordinal >= 0) {
+            var factory = table.descriptor.factory(table.ordinal);
+            if (factory.isPresent()) {
+                return factory.get().get();
+            }
+        }
+        try {
+            Constructor<?> constructor = stateType.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create flyweight " + stateType.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.benjiweber.statemachine;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+public interface GeneratedStateMachine<T extends State<T>> {
+    String SUFFIX = "_StateMachine";
+
+    Class<T> type();
+    List<Class<? extends T>> states();
+    List<String> names();
+    List<List<Class<?>>> transitions();
+    Supplier<? extends T> factory(int ordinal);
+
+    static String companionName(Class<?> stateMachineType) {
+        String packageName = stateMachineType.getPackageName();
+        String binaryName = stateMachineType.getName().substring(packageName.isEmpty() ? 0 : packageName.length() + 1);
+        return (packageName.isEmpty() ? "" : packageName + ".") + companionSimpleName(binaryName);
+    }
+
+    static String companionSimpleName(String nestedBinaryName) {
+        return nestedBinaryName.replace("_", "_1").replace("$", "__") + SUFFIX;
+    }
+}
@@ -0,0 +1,36 @@
+package com.benjiweber.statemachine;
+
+import jdk.jfr.*;
+
+@Name("com.benjiweber.statemachine.Guard")
+@Label("Transition Guard")
+@Category("State Machine")
+@Description("A call to a state's beforeTransition or afterTransition.")
+@Enabled(false)
+@StackTrace(false)
+final class GuardEvent extends Event {
+    @Label("State")
+    Class<?> state;
+
+    @Label("Guard")
+    String guard;
+
+    @Label("Other State")
+    Class<?> other;
+
+    static GuardEvent started() {
+        GuardEvent event = new GuardEvent();
+        event.begin();
+        return event;
+    }
+
+    void completed(Object state, String guard, Object other) {
+        end();
+        if (shouldCommit()) {
+            this.state = state.getClass();
+            this.guard = guard;
+            this.other = other.getClass();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.benjiweber.statemachine;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+final class Guards {
+    private static final BooleanSupplier ALWAYS = () -> true;
+
+    static volatile boolean recording;
+    private static volatile boolean observed;
+
+    static {
+        if (ModuleLayer.boot().findModule("jdk.jfr").isPresent()) {
+            FlightRecording.install();
+        }
+    }
+
+    private Guards() {}
+
+    static <U extends StateGuards<?>> U transition(Object from, Supplier<U> constructor) {
+        if (observed()) {
+            TransitionEvent event = begin();
+            return apply(event, from, constructor.get());
+        }
+        U next = constructor.get();
+        guarded(from, next, ALWAYS, false);
+        return next;
+    }
+
+    static <U extends StateGuards<?>> U apply(Object from, U next) {
+        return apply(begin(), from, next);
+    }
+
+    static <U extends StateGuards<?>> U apply(TransitionEvent event, Object from, U next) {
+        apply(event, from, next, ALWAYS);
+        return next;
+    }
+
+    static boolean apply(TransitionEvent event, Object from, StateGuards<?> next, BooleanSupplier publish) {
+        if (event == null && !observed()) {
+            return guarded(from, next, publish, false);
+        }
+        long start = System.nanoTime();
+        if (!guarded(from, next, publish, recording)) {
+            return false;
+        }
+        completed(event, from, next, System.nanoTime() - start);
+        return true;
+    }
+
+    static TransitionEvent begin() {
+        return recording ? TransitionEvent.started() : null;
+    }
+
+    static void completed(TransitionEvent event, Object from, Object next, long guardNanos) {
+        if (event != null) {
+            event.completed(from, next);
+        }
+        if (TransitionListeners.active()) {
+            TransitionListeners.transitioned(from, next, guardNanos);
+        }
+    }
+
+    static boolean observed() {
+        return observed;
+    }
+
+    static synchronized void observersChanged() {
+        observed = recording || TransitionListeners.active();
+    }
+
+    static boolean hasSideEffects(Object from, StateGuards<?> next) {
+        return TransitionTable.of(from.getClass()).sideEffectBefore || TransitionTable.of(next.getClass()).sideEffectAfter;
+    }
+
+    static boolean applySynchronous(Object from, StateGuards<?> next, BooleanSupplier publish) {
+        boolean record = recording;
+        if (!TransitionTable.of(from.getClass()).sideEffectBefore) {
+            try {
+                before(from, next, record);
+            } catch (RuntimeException | Error e) {
+                TransitionListeners.rejected(from, next.getClass());
+                throw e;
+            }
+        }
+        if (!publish.getAsBoolean()) {
+            return false;
+        }
+        if (!TransitionTable.of(next.getClass()).sideEffectAfter) {
+            after(from, next, record);
+        }
+        return true;
+    }
+
+    static void applySideEffects(Object from, StateGuards<?> next) {
+        boolean record = recording;
+        if (TransitionTable.of(from.getClass()).sideEffectBefore) {
+            before(from, next, record);
+        }
+        if (TransitionTable.of(next.getClass()).sideEffectAfter) {
+            after(from, next, record);
+        }
+    }
+
+    private static boolean guarded(Object from, StateGuards<?> next, BooleanSupplier publish, boolean record) {
+        try {
+            before(from, next, record);
+        } catch (RuntimeException | Error e) {
+            TransitionListeners.rejected(from, next.getClass());
+            throw e;
+        }
+        if (!publish.getAsBoolean()) {
+            return false;
+        }
+        try {
+            after(from, next, record);
+        } catch (RuntimeException | Error e) {
+            if (publish == ALWAYS) {
+                TransitionListeners.rejected(from, next.getClass());
+            }
+            throw e;
+        }
+        return true;
+    }
+
+    private static void before(Object from, StateGuards<?> next, boolean record) {
+        if (!(from instanceof StateGuards)) {
+            return;
+        }
+        if (!record || !TransitionTable.of(from.getClass()).hasGuards) {
+            beforeTransition(from, next);
+            return;
+        }
+        GuardEvent event = GuardEvent.started();
+        beforeTransition(from, next);
+        event.completed(from, "beforeTransition", next);
+    }
+
+    private static void after(Object from, StateGuards<?> next, boolean record) {
+        if (!record || !TransitionTable.of(next.getClass()).hasGuards) {
+            afterTransition(from, next);
+            return;
+        }
+        GuardEvent event = GuardEvent.started();
+        afterTransition(from, next);
+        event.completed(next, "afterTransition", from);
+    }
+
+    // Both states belong to one machine, so each guard's parameter type is the machine's domain type.
+    @SuppressWarnings("unchecked")
+    private static void beforeTransition(Object from, Object next) {
+        ((StateGuards<Object>) from).beforeTransition(next);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void afterTransition(Object from, Object next) {
+        ((StateGuards<Object>) next).afterTransition(from);
+    }
+}
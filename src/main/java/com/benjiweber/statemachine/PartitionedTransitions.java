@@ -0,0 +1,247 @@
+package com.benjiweber.statemachine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+public final class PartitionedTransitions<T extends State<T>> implements AutoCloseable {
+    private final Partition<T>[] partitions;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // generic array creation
+    private PartitionedTransitions(Builder<T> builder) {
+        this.partitions = new Partition[builder.partitions];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition<>(builder.queueCapacity, builder.batchSize);
+        }
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i].start(builder.threadFactory, i);
+        }
+    }
+
+    public static <T extends State<T>> Builder<T> builder(Class<T> stateMachineType) {
+        return new Builder<>();
+    }
+
+    public int partitions() {
+        return partitions.length;
+    }
+
+    public int partitionOf(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (((hash ^ (hash >>> 32)) & 0xFFFFFFFFL) % partitions.length);
+    }
+
+    public void put(long id, T state) throws InterruptedException {
+        enqueue(id, states -> states.put(id, state));
+    }
+
+    public void put(long id, Class<? extends T> state) throws InterruptedException {
+        put(id, NextState.of(state).get());
+    }
+
+    public <DESIRED extends T> CompletableFuture<Boolean> submit(long id, NextState<DESIRED> desired) throws InterruptedException {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        enqueue(id, states -> result.complete(transition(states, id, desired)), result);
+        return result;
+    }
+
+    public <DESIRED extends T> CompletableFuture<Boolean> offer(long id, NextState<DESIRED> desired) {
+        checkOpen();
+        Partition<T> partition = partitions[partitionOf(id)];
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (!partition.mailbox.offer(new Command<>(states -> result.complete(transition(states, id, desired)), result))) {
+            result.completeExceptionally(new RejectedExecutionException("Partition " + partitionOf(id) + " is full."));
+        }
+        partition.rejectIfTerminated();
+        return result;
+    }
+
+    public CompletableFuture<T> get(long id) throws InterruptedException {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        enqueue(id, states -> result.complete(states.get(id)), result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked") // getClass() erases to Class<? extends State>; the state is a T
+    public CompletableFuture<Class<? extends T>> type(long id) throws InterruptedException {
+        return get(id).thenApply(state -> state == null ? null : (Class<? extends T>) state.getClass());
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (closed.compareAndSet(false, true)) {
+                for (Partition<T> partition : partitions) {
+                    partition.mailbox.put(new Command<>(null, null));
+                }
+            }
+            for (Partition<T> partition : partitions) {
+                partition.thread.join();
+            }
+        } catch (InterruptedException e) {
+            for (Partition<T> partition : partitions) {
+                partition.thread.interrupt();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <T extends State<T>, DESIRED extends T> boolean transition(Map<Long, T> states, long id, NextState<DESIRED> desired) {
+        T from = states.get(id);
+        if (from == null) {
+            return false;
+        }
+        T to = from.transitionOrSame(desired);
+        states.put(id, to);
+        return to != from;
+    }
+
+    private void enqueue(long id, Consumer<Map<Long, T>> action) throws InterruptedException {
+        enqueue(id, action, null);
+    }
+
+    private void enqueue(long id, Consumer<Map<Long, T>> action, CompletableFuture<?> result) throws InterruptedException {
+        checkOpen();
+        Partition<T> partition = partitions[partitionOf(id)];
+        partition.mailbox.put(new Command<>(action, result));
+        partition.rejectIfTerminated();
+    }
+
+    private void checkOpen() {
+        if (closed.get()) {
+            throw new IllegalStateException("PartitionedTransitions has been closed.");
+        }
+    }
+
+    private static final class Command<T extends State<T>> {
+        final Consumer<Map<Long, T>> action;
+        final CompletableFuture<?> result;
+
+        Command(Consumer<Map<Long, T>> action, CompletableFuture<?> result) {
+            this.action = action;
+            this.result = result;
+        }
+    }
+
+    private static final class Partition<T extends State<T>> implements Runnable {
+        final Map<Long, T> states = new HashMap<>();
+        final BlockingQueue<Command<T>> mailbox;
+        final int batchSize;
+        volatile boolean terminated;
+        Thread thread;
+
+        Partition(int queueCapacity, int batchSize) {
+            this.mailbox = new ArrayBlockingQueue<>(queueCapacity);
+            this.batchSize = batchSize;
+        }
+
+        void start(ThreadFactory threadFactory, int index) {
+            if (threadFactory == null) {
+                thread = new Thread(this, "statemachine-partition-" + index);
+                thread.setDaemon(true);
+            } else {
+                thread = threadFactory.newThread(this);
+            }
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            List<Command<T>> batch = new ArrayList<>(batchSize);
+            try {
+                while (true) {
+                    batch.add(mailbox.take());
+                    mailbox.drainTo(batch, batchSize - 1);
+                    for (Command<T> command : batch) {
+                        if (command.action == null) {
+                            return;
+                        }
+                        apply(command);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                terminated = true;
+                rejectRemaining(batch);
+            }
+        }
+
+        void rejectIfTerminated() {
+            if (terminated) {
+                rejectRemaining(new ArrayList<>());
+            }
+        }
+
+        private void rejectRemaining(List<Command<T>> batch) {
+            mailbox.drainTo(batch);
+            for (Command<T> command : batch) {
+                if (command.result != null) {
+                    command.result.completeExceptionally(new IllegalStateException("PartitionedTransitions has been closed."));
+                }
+            }
+        }
+
+        private void apply(Command<T> command) {
+            try {
+                command.action.accept(states);
+            } catch (RuntimeException e) {
+                if (command.result != null) {
+                    command.result.completeExceptionally(e);
+                } else {
+                    Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+                }
+            }
+        }
+    }
+
+    public static final class Builder<T extends State<T>> {
+        private int partitions = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = 1024;
+        private int batchSize = 256;
+        private ThreadFactory threadFactory;
+
+        private Builder() {}
+
+        public Builder<T> partitions(int partitions) {
+            this.partitions = positive("partitions", partitions);
+            return this;
+        }
+
+        public Builder<T> queueCapacity(int queueCapacity) {
+            this.queueCapacity = positive("queueCapacity", queueCapacity);
+            return this;
+        }
+
+        public Builder<T> batchSize(int batchSize) {
+            this.batchSize = positive("batchSize", batchSize);
+            return this;
+        }
+
+        public Builder<T> threadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        public PartitionedTransitions<T> build() {
+            return new PartitionedTransitions<>(this);
+        }
+
+        private static int positive(String name, int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.benjiweber.statemachine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+public final class RecordMatcher<T extends State<T>> {
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+    private static final int ORDINAL_BITS = 16;
+    private static final long ORDINAL_MASK = (1L << ORDINAL_BITS) - 1;
+
+    private final Dfa<T> dfa;
+    private final byte delimiter;
+    private final int chunkSize;
+
+    RecordMatcher(Dfa<T> dfa, byte delimiter, int chunkSize) {
+        this.dfa = dfa;
+        this.delimiter = delimiter;
+        this.chunkSize = chunkSize;
+    }
+
+    RecordMatcher(Dfa<T> dfa, byte delimiter) {
+        this(dfa, delimiter, DEFAULT_CHUNK_SIZE);
+    }
+
+    public StateLongMap<T> count(Path file) throws IOException {
+        return count(file, ForkJoinPool.commonPool());
+    }
+
+    public StateLongMap<T> count(Path file, ForkJoinPool pool) throws IOException {
+        int states = dfa.descriptor().size();
+        LongStream records = records(file);
+        long[] counts = pool.submit(() -> records.collect(
+            () -> new long[states],
+            (totals, record) -> totals[(int) (record & ORDINAL_MASK)]++,
+            (left, right) -> {
+                for (int i = 0; i < states; i++) left[i] += right[i];
+            })).join();
+        StateLongMap<T> result = StateLongMap.of(dfa.descriptor().type());
+        for (int ordinal = 0; ordinal < states; ordinal++) {
+            result.put(dfa.descriptor().valueOf(ordinal), counts[ordinal]);
+        }
+        return result;
+    }
+
+    public long[] offsets(Path file, Class<? extends T> result) throws IOException {
+        return offsets(file, result, ForkJoinPool.commonPool());
+    }
+
+    public long[] offsets(Path file, Class<? extends T> result, ForkJoinPool pool) throws IOException {
+        int ordinal = dfa.descriptor().checkedIndexOf(result);
+        LongStream records = records(file);
+        return pool.submit(() -> records
+            .filter(record -> (record & ORDINAL_MASK) == ordinal)
+            .map(record -> record >>> ORDINAL_BITS)
+            .toArray()).join();
+    }
+
+    private LongStream records(Path file) throws IOException {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        List<Long> starts = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long length = Math.min(chunkSize, size - start);
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                int end = (int) length;
+                if (start + length < size) {
+                    while (end > 0 && chunk.get(end - 1) != delimiter) end--;
+                    if (end == 0) {
+                        throw new IllegalStateException("Record at offset " + start + " in " + file + " is longer than " + chunkSize + " bytes.");
+                    }
+                }
+                chunks.add(chunk.limit(end));
+                starts.add(start);
+                start += end;
+            }
+        }
+        long[] offsets = starts.stream().mapToLong(Long::longValue).toArray();
+        return StreamSupport.longStream(
+            new Records(chunks.toArray(new ByteBuffer[0]), offsets, 0, 0, chunks.size(), 0),
+            true);
+    }
+
+    private final class Records implements Spliterator.OfLong {
+        private final ByteBuffer[] chunks;
+        private final long[] offsets;
+        private int chunk;
+        private int position;
+        private int endChunk;
+        private int endPosition;
+
+        Records(ByteBuffer[] chunks, long[] offsets, int chunk, int position, int endChunk, int endPosition) {
+            this.chunks = chunks;
+            this.offsets = offsets;
+            this.chunk = chunk;
+            this.position = position;
+            this.endChunk = endChunk;
+            this.endPosition = endPosition;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while (chunk < endChunk || (chunk == endChunk && position < endPosition)) {
+                ByteBuffer bytes = chunks[chunk];
+                int limit = chunk == endChunk ? endPosition : bytes.limit();
+                if (position >= limit) {
+                    chunk++;
+                    position = 0;
+                    continue;
+                }
+                int start = position;
+                int end = start;
+                while (end < limit && bytes.get(end) != delimiter) end++;
+                position = end + 1;
+                int row = dfa.advance(dfa.initial(), bytes, start, end);
+                action.accept((offsets[chunk] + start) << ORDINAL_BITS | dfa.resultOrdinal(row));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            if (endChunk - chunk > 1 || (endChunk - chunk == 1 && endPosition > 0)) {
+                int middle = (chunk + endChunk + 1) >>> 1;
+                Records prefix = new Records(chunks, offsets, chunk, position, middle, 0);
+                chunk = middle;
+                position = 0;
+                return prefix;
+            }
+            ByteBuffer bytes = chunks[chunk];
+            int limit = chunk == endChunk ? endPosition : bytes.limit();
+            if (limit - position < 2) {
+                return null;
+            }
+            int split = position + (limit - position) / 2;
+            while (split < limit && bytes.get(split - 1) != delimiter) split++;
+            if (split <= position || split >= limit) {
+                return null;
+            }
+            Records prefix = new Records(chunks, offsets, chunk, position, chunk, split);
+            position = split;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = 0;
+            for (int c = chunk; c <= endChunk && c < chunks.length; c++) {
+                int from = c == chunk ? position : 0;
+                int to = c == endChunk ? endPosition : chunks[c].limit();
+                size += Math.max(0, to - from);
+            }
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.benjiweber.statemachine;
+
+import jdk.jfr.*;
+
+@Name("com.benjiweber.statemachine.Rejection")
+@Label("Rejected Transition")
+@Category("State Machine")
+@Description("A transition that was not valid from the current state, or that a guard aborted by throwing.")
+@Enabled(false)
+@StackTrace(true)
+final class RejectionEvent extends Event {
+    @Label("Machine")
+    Class<?> machine;
+
+    @Label("From")
+    Class<?> from;
+
+    @Label("To")
+    Class<?> to;
+
+    static void emit(Class<?> from, Class<?> target) {
+        RejectionEvent event = new RejectionEvent();
+        if (event.shouldCommit()) {
+            event.machine = TransitionTable.of(from).domainType;
+            event.from = from;
+            event.to = target;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.benjiweber.statemachine;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+@Retention(RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SideEffect {
+
+}
@@ -2,15 +2,9 @@ package com.benjiweber.statemachine;
 
 
 import java.lang.constant.ClassDesc;
-import java.lang.reflect.Array;
-import java.lang.reflect.ParameterizedType;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
-
-import static java.util.Arrays.asList;
-import static java.util.stream.Collectors.*;
 
 public interface State<DOMAINSTATETYPE extends State> extends StateGuards<DOMAINSTATETYPE> {
 
@@ -38,18 +32,16 @@ public interface State<DOMAINSTATETYPE extends State> extends StateGuards<DOMAIN
     default <DESIRED extends DOMAINSTATETYPE> OrElse<DOMAINSTATETYPE, DESIRED> tryTransition(NextState<DESIRED> desired) {
         return new OrElse<DOMAINSTATETYPE, DESIRED>() {
             public <E extends Exception> DESIRED orElseThrow(Supplier<E> e) throws E {
+                TransitionEvent event = Guards.begin();
                 if (canTransitionTo(desired)) {
-                    return applyGuards(desired.get());
+                    return Guards.apply(event, State.this, desired.get());
                 }
 
+                TransitionListeners.rejected(State.this, desired.type());
                 throw e.get();
             }
             public DOMAINSTATETYPE ignoreIfInvalid() {
-                try {
-                    return unchecked();
-                } catch (InvalidStateTransitionException e) {
-                    return (DOMAINSTATETYPE)State.this;
-                }
+                return transitionOrSame(desired);
             }
             public DESIRED unchecked() {
                 return orElseThrow(InvalidStateTransitionException::new);
@@ -57,54 +49,63 @@ public interface State<DOMAINSTATETYPE extends State> extends StateGuards<DOMAIN
         };
     }
 
-    default <U extends StateGuards> U applyGuards(U next) {
-        if (this instanceof StateGuards) {
-            ((StateGuards)this).beforeTransition(next);
+    default <DESIRED extends DOMAINSTATETYPE> OrElse<DOMAINSTATETYPE, DESIRED> tryTransition(Class<DESIRED> desired) {
+        return tryTransition(new StateConstructor<>(desired));
+    }
+
+    default OrElse<DOMAINSTATETYPE, DOMAINSTATETYPE> tryTransition(String name) {
+        return tryTransition(valueOf(name));
+    }
+
+    // The descriptor of domainType() only holds DOMAINSTATETYPE classes.
+    @SuppressWarnings("unchecked")
+    default OrElse<DOMAINSTATETYPE, DOMAINSTATETYPE> tryTransition(int ordinal) {
+        return tryTransition((Class<DOMAINSTATETYPE>) StateMachineDescriptor.forType(domainType()).valueOf(ordinal));
+    }
+
+    default <DESIRED extends DOMAINSTATETYPE> DOMAINSTATETYPE transitionOrSame(NextState<DESIRED> desired) {
+        TransitionEvent event = Guards.begin();
+        if (canTransitionTo(desired)) {
+            return Guards.apply(event, this, desired.get());
         }
-        next.afterTransition(this);
-        return next;
+        TransitionListeners.rejected(this, desired.type());
+        return (DOMAINSTATETYPE)this;
+    }
+
+    default <U extends StateGuards> U applyGuards(U next) {
+        return Guards.apply(this, next);
     }
 
-    class InvalidStateTransitionException extends RuntimeException {}
+    class InvalidStateTransitionException extends RuntimeException {
+        private static final boolean stackTraces = Boolean.getBoolean("com.benjiweber.statemachine.stackTraces");
+
+        public InvalidStateTransitionException() {
+            super(null, null, false, stackTraces);
+        }
+    }
 
     default <U extends DOMAINSTATETYPE> boolean canTransitionTo(NextState<U> toState) {
-        return validTransitionTypes().contains(toState.type());
+        return TransitionTable.of(getClass()).permits(toState.type());
     }
 
     default List<Class<?>> validTransitionTypes() {
-        return asList(getClass().getGenericInterfaces())
-            .stream()
-            .filter(type -> type instanceof ParameterizedType)
-            .map(type -> (ParameterizedType) type)
-            .filter(TransitionTo::isTransition)
-            .flatMap(type -> asList(type.getActualTypeArguments()).stream())
-            .map(type -> (Class<?>) type)
-            .collect(toList());
+        return TransitionTable.of(getClass()).validTransitionTypes();
     }
 
-    static <T extends State<T>> Class<T>[] values(Class<T> stateMachineType) {
-        var typedArray = (Class<T>[])Array.newInstance(stateMachineType.getClass(), 0);
-        return (Class<T>[]) valuesSet(stateMachineType).toArray(typedArray);
+    static <T extends State<T>, R> Dispatcher.Builder<T, R> matcher(Class<T> stateMachineType) {
+        return Dispatcher.builder(stateMachineType);
+    }
 
+    static <T extends State<T>> Class<T>[] values(Class<T> stateMachineType) {
+        return StateMachineDescriptor.of(stateMachineType).values();
     }
 
     static <T extends State<T>> Set<Class<T>> valuesSet(Class<T> stateMachineType) {
-        return new LinkedHashSet(
-            valuesList(stateMachineType)
-        );
+        return StateMachineDescriptor.of(stateMachineType).valuesSet();
     }
 
     static <T extends State<T>> List<Class> valuesList(Class<T> stateMachineType) {
-        assertSealed(stateMachineType);
-
-        return Stream.of(stateMachineType.getPermittedSubclasses())
-            .collect(toList());
-    }
-
-    private static <T extends State<T>> void assertSealed(Class<T> stateMachineType) {
-        if (!stateMachineType.isSealed()) {
-            throw new IllegalArgumentException(stateMachineType.getName() + " is not a sealed type.");
-        }
+        return StateMachineDescriptor.of(stateMachineType).valuesList();
     }
 
     private static Class<?> classFromDesc(ClassDesc clsDesc) {
@@ -116,13 +117,7 @@ public interface State<DOMAINSTATETYPE extends State> extends StateGuards<DOMAIN
     }
 
     static <T extends State<T>> Class<T> valueOf(Class<T> stateMachineType, String name) {
-        assertSealed(stateMachineType);
-
-        return valuesSet(stateMachineType)
-            .stream()
-            .filter(c -> Objects.equals(c.getSimpleName(), name))
-            .findFirst()
-            .orElseThrow(IllegalArgumentException::new);
+        return StateMachineDescriptor.of(stateMachineType).valueOf(name);
     }
 
     default Class<DOMAINSTATETYPE> valueOf(String name) {
@@ -139,24 +134,25 @@ public interface State<DOMAINSTATETYPE extends State> extends StateGuards<DOMAIN
     }
 
     default Class<DOMAINSTATETYPE> domainType() {
-        return (Class<DOMAINSTATETYPE>) getClass().getGenericInterfaces()[0];
+        return (Class<DOMAINSTATETYPE>) TransitionTable.of(getClass()).domainType;
     }
 
     default Class<DOMAINSTATETYPE>[] values() {
-        var typedArray = (Class<DOMAINSTATETYPE>[])Array.newInstance(domainType().getClass(), 0);
-        return (Class<DOMAINSTATETYPE>[]) valuesSet(domainType()).toArray(typedArray);
-
+        return State.values(domainType());
     }
 
     static <T extends State<T>, U extends T> int ordinal(Class<T> stateMachineType, Class<U> instanceType) {
-        return valuesList(stateMachineType).indexOf(instanceType);
+        return StateMachineDescriptor.of(stateMachineType).ordinal(instanceType);
     }
 
     default int ordinal() {
-        return State.ordinal(domainType(), (Class<DOMAINSTATETYPE>)getClass());
+        TransitionTable table = TransitionTable.of(getClass());
+        return table.ordinal >= 0
+            ? table.ordinal
+            : State.ordinal(domainType(), (Class<DOMAINSTATETYPE>)getClass());
     }
 
     default String name() {
-        return getClass().getSimpleName();
+        return TransitionTable.of(getClass()).name;
     }
 }
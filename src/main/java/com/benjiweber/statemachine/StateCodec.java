@@ -0,0 +1,155 @@
+package com.benjiweber.statemachine;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+public final class StateCodec<T extends State<T>> {
+    private static final ClassValue<StateCodec<?>> codecs = new ClassValue<>() {
+        protected StateCodec<?> computeValue(Class<?> stateMachineType) {
+            return new StateCodec<>(StateMachineDescriptor.forType(stateMachineType));
+        }
+    };
+
+    private final StateMachineDescriptor<T> descriptor;
+    private final long fingerprint;
+
+    private StateCodec(StateMachineDescriptor<T> descriptor) {
+        this.descriptor = descriptor;
+        this.fingerprint = fingerprintOf(descriptor);
+    }
+
+    // codecs keeps each machine type's own codec.
+    @SuppressWarnings("unchecked")
+    public static <T extends State<T>> StateCodec<T> of(Class<T> stateMachineType) {
+        return (StateCodec<T>) codecs.get(stateMachineType);
+    }
+
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    public void writeHeader(ByteBuffer out) {
+        out.putLong(fingerprint);
+    }
+
+    public void readHeader(ByteBuffer in) {
+        long written = in.getLong();
+        if (written != fingerprint) {
+            throw new IllegalStateException(
+                "Snapshot was written for a different version of " + descriptor.type().getName()
+                    + " (fingerprint " + Long.toHexString(written) + ", expected " + Long.toHexString(fingerprint) + ")");
+        }
+    }
+
+    public void encode(T state, ByteBuffer out) {
+        writeVarint(state.ordinal(), out);
+    }
+
+    public T decode(ByteBuffer in, Function<? super Class<T>, ? extends T> factory) {
+        return factory.apply(decodeType(in));
+    }
+
+    public Class<T> decodeType(ByteBuffer in) {
+        return descriptor.valueOf(readOrdinal(in));
+    }
+
+    public void encodeAll(T[] states, ByteBuffer out) {
+        encodeAll(states, 0, states.length, out);
+    }
+
+    public void encodeAll(T[] states, int offset, int length, ByteBuffer out) {
+        writeVarint(length, out);
+        for (int i = offset; i < offset + length; i++) {
+            writeVarint(states[i].ordinal(), out);
+        }
+    }
+
+    public int decodeAll(ByteBuffer in, T[] into, Function<? super Class<T>, ? extends T> factory) {
+        int length = readVarint(in);
+        if (length > into.length) {
+            throw new IllegalArgumentException("Snapshot holds " + length + " states, array holds " + into.length);
+        }
+        for (int i = 0; i < length; i++) {
+            into[i] = factory.apply(descriptor.valueOf(readOrdinal(in)));
+        }
+        return length;
+    }
+
+    public void encodeOrdinals(byte[] ordinals, int offset, int length, ByteBuffer out) {
+        writeVarint(length, out);
+        if (descriptor.size() <= 128) {
+            out.put(ordinals, offset, length);
+            return;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            writeVarint(ordinals[i] & 0xFF, out);
+        }
+    }
+
+    public int decodeOrdinals(ByteBuffer in, byte[] into) {
+        int length = readVarint(in);
+        if (length > into.length) {
+            throw new IllegalArgumentException("Snapshot holds " + length + " states, array holds " + into.length);
+        }
+        if (descriptor.size() <= 128) {
+            in.get(into, 0, length);
+            for (int i = 0; i < length; i++) {
+                checkOrdinal(into[i]);
+            }
+            return length;
+        }
+        for (int i = 0; i < length; i++) {
+            into[i] = (byte) readOrdinal(in);
+        }
+        return length;
+    }
+
+    private int readOrdinal(ByteBuffer in) {
+        return checkOrdinal(readVarint(in));
+    }
+
+    private int checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= descriptor.size()) {
+            throw new IllegalStateException("No state with ordinal " + ordinal + " in " + descriptor.type().getName());
+        }
+        return ordinal;
+    }
+
+    static void writeVarint(int value, ByteBuffer out) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    private static long fingerprintOf(StateMachineDescriptor<?> descriptor) {
+        long hash = 0xcbf29ce484222325L;
+        hash = fnv(hash, descriptor.type().getName());
+        for (Class<?> state : descriptor.valuesList()) {
+            hash = fnv(hash, state.getName());
+        }
+        return hash;
+    }
+
+    private static long fnv(long hash, String value) {
+        for (byte b : (value + '\n').getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
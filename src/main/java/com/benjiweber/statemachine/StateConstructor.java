@@ -0,0 +1,78 @@
+package com.benjiweber.statemachine;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+
+import static java.lang.invoke.MethodType.methodType;
+
+final class StateConstructor<T> implements NextState<T> {
+    private static final long serialVersionUID = 1L;
+    private static final MethodHandle SUPPLIER_GET;
+    static {
+        try {
+            SUPPLIER_GET = MethodHandles.lookup()
+                .findVirtual(Supplier.class, "get", methodType(Object.class))
+                .asType(methodType(Object.class, Supplier.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final ClassValue<MethodHandle> constructors = new ClassValue<>() {
+        protected MethodHandle computeValue(Class<?> stateType) {
+            return constructorOf(stateType);
+        }
+    };
+
+    private final Class<T> type;
+
+    StateConstructor(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public Class<T> type() {
+        return type;
+    }
+
+    @Override
+    public T get() {
+        try {
+            return (T) constructors.get(type).invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create " + type.getName(), e);
+        }
+    }
+
+    private static MethodHandle constructorOf(Class<?> stateType) {
+        Object shared = Flyweights.canonical(stateType);
+        if (shared != null) {
+            return MethodHandles.constant(Object.class, shared);
+        }
+        TransitionTable table = TransitionTable.of(stateType);
+        if (table.ordinal >= 0) {
+            var factory = table.descriptor.factory(table.ordinal);
+            if (factory.isPresent()) {
+                return SUPPLIER_GET.bindTo(factory.get());
+            }
+        }
+        if (stateType.isMemberClass() && !Modifier.isStatic(stateType.getModifiers())) {
+            throw new IllegalArgumentException(stateType.getName() + " is an inner class and needs an enclosing instance; "
+                + "transition with a lambda such as () -> outer.new " + stateType.getSimpleName() + "() instead.");
+        }
+        try {
+            Constructor<?> constructor = stateType.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup()
+                .unreflectConstructor(constructor)
+                .asType(methodType(Object.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException(stateType.getName() + " has no usable no-arg constructor.", e);
+        }
+    }
+}
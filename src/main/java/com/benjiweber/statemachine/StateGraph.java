@@ -0,0 +1,165 @@
+package com.benjiweber.statemachine;
+
+import java.util.*;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+
+public final class StateGraph<T extends State<T>> {
+    private static final ClassValue<StateGraph<?>> graphs = new ClassValue<>() {
+        protected StateGraph<?> computeValue(Class<?> stateMachineType) {
+            return new StateGraph<>(StateMachineDescriptor.forType(stateMachineType));
+        }
+    };
+
+    private final StateMachineDescriptor<T> descriptor;
+    private final int words;
+    private final long[][] reachable;
+    private final int[][] nextHop;
+    private final Set<Class<T>> terminal;
+
+    private StateGraph(StateMachineDescriptor<T> descriptor) {
+        this.descriptor = descriptor;
+        int size = descriptor.size();
+        this.words = (size + 63) >>> 6;
+        boolean[][] edges = new boolean[size][size];
+        for (int from = 0; from < size; from++) {
+            TransitionTable table = TransitionTable.of(descriptor.valueOf(from));
+            for (int to = 0; to < size; to++) {
+                edges[from][to] = table.permits(descriptor.valueOf(to));
+            }
+        }
+        this.reachable = closure(edges);
+        this.nextHop = nextHops(edges);
+        Set<Class<T>> terminal = new LinkedHashSet<>();
+        for (int from = 0; from < size; from++) {
+            boolean leaves = false;
+            for (int to = 0; to < size; to++) {
+                leaves |= edges[from][to] && to != from;
+            }
+            if (!leaves) {
+                terminal.add(descriptor.valueOf(from));
+            }
+        }
+        this.terminal = unmodifiableSet(terminal);
+    }
+
+    // graphs keeps each machine type's own graph.
+    @SuppressWarnings("unchecked")
+    public static <T extends State<T>> StateGraph<T> of(Class<T> stateMachineType) {
+        return (StateGraph<T>) graphs.get(stateMachineType);
+    }
+
+    public boolean canEventuallyReach(int fromOrdinal, int toOrdinal) {
+        return (reachable[fromOrdinal][toOrdinal >>> 6] & (1L << toOrdinal)) != 0;
+    }
+
+    public boolean canEventuallyReach(Class<? extends T> from, Class<? extends T> to) {
+        return canEventuallyReach(ordinalOf(from), ordinalOf(to));
+    }
+
+    public boolean canEventuallyReach(T from, Class<? extends T> to) {
+        return canEventuallyReach(ordinalOf(from.getClass()), ordinalOf(to));
+    }
+
+    public Optional<List<Class<T>>> shortestPath(Class<? extends T> from, Class<? extends T> to) {
+        int current = ordinalOf(from);
+        int target = ordinalOf(to);
+        if (!canEventuallyReach(current, target)) {
+            return Optional.empty();
+        }
+        List<Class<T>> path = new ArrayList<>();
+        path.add(descriptor.valueOf(current));
+        while (current != target) {
+            current = nextHop[current][target];
+            path.add(descriptor.valueOf(current));
+        }
+        return Optional.of(unmodifiableList(path));
+    }
+
+    public Set<Class<T>> terminalStates() {
+        return terminal;
+    }
+
+    public boolean isTerminal(Class<? extends T> state) {
+        return terminal.contains(state);
+    }
+
+    public Set<Class<T>> reachableFrom(Class<? extends T> start) {
+        return statesWhere(ordinalOf(start), true);
+    }
+
+    public Set<Class<T>> unreachableFrom(Class<? extends T> start) {
+        return statesWhere(ordinalOf(start), false);
+    }
+
+    private Set<Class<T>> statesWhere(int from, boolean reachable) {
+        Set<Class<T>> states = new LinkedHashSet<>();
+        for (int to = 0; to < descriptor.size(); to++) {
+            if (canEventuallyReach(from, to) == reachable) {
+                states.add(descriptor.valueOf(to));
+            }
+        }
+        return unmodifiableSet(states);
+    }
+
+    private long[][] closure(boolean[][] edges) {
+        int size = edges.length;
+        long[][] reach = new long[size][words];
+        for (int from = 0; from < size; from++) {
+            reach[from][from >>> 6] |= 1L << from;
+            for (int to = 0; to < size; to++) {
+                if (edges[from][to]) {
+                    reach[from][to >>> 6] |= 1L << to;
+                }
+            }
+        }
+        for (int via = 0; via < size; via++) {
+            for (int from = 0; from < size; from++) {
+                if ((reach[from][via >>> 6] & (1L << via)) != 0) {
+                    for (int word = 0; word < words; word++) {
+                        reach[from][word] |= reach[via][word];
+                    }
+                }
+            }
+        }
+        return reach;
+    }
+
+    private static int[][] nextHops(boolean[][] edges) {
+        int size = edges.length;
+        int[][] nextHop = new int[size][size];
+        int[] queue = new int[size];
+        for (int from = 0; from < size; from++) {
+            int[] hop = nextHop[from];
+            Arrays.fill(hop, -1);
+            hop[from] = from;
+            int head = 0;
+            int tail = 0;
+            for (int to = 0; to < size; to++) {
+                if (edges[from][to] && hop[to] < 0) {
+                    hop[to] = to;
+                    queue[tail++] = to;
+                }
+            }
+            while (head < tail) {
+                int state = queue[head++];
+                for (int to = 0; to < size; to++) {
+                    if (edges[state][to] && hop[to] < 0) {
+                        hop[to] = hop[state];
+                        queue[tail++] = to;
+                    }
+                }
+            }
+        }
+        return nextHop;
+    }
+
+    private int ordinalOf(Class<?> state) {
+        int ordinal = descriptor.ordinal(state);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException(state.getName() + " is not a state of " + descriptor.type().getName());
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,67 @@
+package com.benjiweber.statemachine;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+public final class StateIntMap<T extends State<T>> {
+    private final StateMachineDescriptor<T> descriptor;
+    private final int[] values;
+
+    public interface Entries<T> {
+        void accept(Class<T> state, int value);
+    }
+
+    private StateIntMap(StateMachineDescriptor<T> descriptor) {
+        this.descriptor = descriptor;
+        this.values = new int[descriptor.size()];
+    }
+
+    public static <T extends State<T>> StateIntMap<T> of(Class<T> stateMachineType) {
+        return new StateIntMap<>(StateMachineDescriptor.of(stateMachineType));
+    }
+
+    public int get(Object classOrState) {
+        return values[descriptor.checkedIndexOf(classOrState)];
+    }
+
+    public int get(int ordinal) {
+        return values[ordinal];
+    }
+
+    public void put(Object classOrState, int value) {
+        values[descriptor.checkedIndexOf(classOrState)] = value;
+    }
+
+    public int increment(Object classOrState) {
+        return ++values[descriptor.checkedIndexOf(classOrState)];
+    }
+
+    public int add(Object classOrState, int delta) {
+        return values[descriptor.checkedIndexOf(classOrState)] += delta;
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int value : values) sum += value;
+        return sum;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+    }
+
+    public void forEach(Entries<T> entries) {
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            entries.accept(descriptor.valueOf(ordinal), values[ordinal]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            joiner.add(descriptor.name(ordinal) + "=" + values[ordinal]);
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.benjiweber.statemachine;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+public final class StateLongMap<T extends State<T>> {
+    private final StateMachineDescriptor<T> descriptor;
+    private final long[] values;
+
+    public interface Entries<T> {
+        void accept(Class<T> state, long value);
+    }
+
+    private StateLongMap(StateMachineDescriptor<T> descriptor) {
+        this.descriptor = descriptor;
+        this.values = new long[descriptor.size()];
+    }
+
+    public static <T extends State<T>> StateLongMap<T> of(Class<T> stateMachineType) {
+        return new StateLongMap<>(StateMachineDescriptor.of(stateMachineType));
+    }
+
+    public long get(Object classOrState) {
+        return values[descriptor.checkedIndexOf(classOrState)];
+    }
+
+    public long get(int ordinal) {
+        return values[ordinal];
+    }
+
+    public void put(Object classOrState, long value) {
+        values[descriptor.checkedIndexOf(classOrState)] = value;
+    }
+
+    public long increment(Object classOrState) {
+        return ++values[descriptor.checkedIndexOf(classOrState)];
+    }
+
+    public long add(Object classOrState, long delta) {
+        return values[descriptor.checkedIndexOf(classOrState)] += delta;
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (long value : values) sum += value;
+        return sum;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+    }
+
+    public void forEach(Entries<T> entries) {
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            entries.accept(descriptor.valueOf(ordinal), values[ordinal]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            joiner.add(descriptor.name(ordinal) + "=" + values[ordinal]);
+        }
+        return joiner.toString();
+    }
+}
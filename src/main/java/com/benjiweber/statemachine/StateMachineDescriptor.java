@@ -0,0 +1,211 @@
+package com.benjiweber.statemachine;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Collections.unmodifiableSet;
+
+public final class StateMachineDescriptor<T extends State<T>> {
+    private static final ClassValue<StateMachineDescriptor<?>> descriptors = new ClassValue<>() {
+        protected StateMachineDescriptor<?> computeValue(Class<?> stateMachineType) {
+            return create(stateMachineType.asSubclass(State.class));
+        }
+    };
+
+    private final Class<T> type;
+    private final Class<T>[] values;
+    @SuppressWarnings("rawtypes") // the raw element type of State.valuesList
+    private final List<Class> valuesList;
+    private final Set<Class<T>> valuesSet;
+    private final String[] names;
+    private final Map<String, Class<T>> byName;
+    private final Map<Class<?>, Integer> ordinals;
+    private final GeneratedStateMachine<T> companion;
+    private final Object[] instances;
+    volatile TransitionListener[] listeners = {};
+
+    // Every permitted subclass, or every state the companion lists for type, is a Class<T>.
+    @SuppressWarnings("unchecked")
+    private StateMachineDescriptor(Class<T> type, GeneratedStateMachine<T> companion) {
+        if (companion == null && !type.isSealed()) {
+            throw new IllegalArgumentException(type.getName() + " is not a sealed type.");
+        }
+        this.type = type;
+        this.companion = companion;
+        Class<?>[] permitted = companion != null
+            ? companion.states().toArray(new Class<?>[0])
+            : type.getPermittedSubclasses();
+        this.values = (Class<T>[]) Array.newInstance(Class.class, permitted.length);
+        this.names = new String[permitted.length];
+        var byName = new HashMap<String, Class<T>>();
+        var ordinals = new HashMap<Class<?>, Integer>();
+        for (int ordinal = 0; ordinal < permitted.length; ordinal++) {
+            values[ordinal] = (Class<T>) permitted[ordinal];
+            names[ordinal] = companion != null
+                ? companion.names().get(ordinal)
+                : permitted[ordinal].getSimpleName();
+            byName.putIfAbsent(names[ordinal], values[ordinal]);
+            ordinals.put(values[ordinal], ordinal);
+        }
+        this.valuesList = List.of(values);
+        this.valuesSet = unmodifiableSet(new LinkedHashSet<>(List.of(values)));
+        this.byName = unmodifiableMap(byName);
+        this.ordinals = unmodifiableMap(ordinals);
+        this.instances = new Object[permitted.length];
+    }
+
+    // Only reached through descriptors, whose keys are the State types handed to of() or forType().
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static StateMachineDescriptor<?> create(Class<? extends State> stateMachineType) {
+        return new StateMachineDescriptor(stateMachineType, companionOf(stateMachineType));
+    }
+
+    // descriptors keeps each machine type's own descriptor.
+    @SuppressWarnings("unchecked")
+    public static <T extends State<T>> StateMachineDescriptor<T> of(Class<T> stateMachineType) {
+        return (StateMachineDescriptor<T>) descriptors.get(stateMachineType);
+    }
+
+    static StateMachineDescriptor<?> forType(Class<?> stateMachineType) {
+        return descriptors.get(stateMachineType);
+    }
+
+    static <T extends State<T>> StateMachineDescriptor<T> reflective(Class<T> stateMachineType) {
+        return new StateMachineDescriptor<>(stateMachineType, null);
+    }
+
+    static <T extends State<T>> StateMachineDescriptor<T> withCompanion(Class<T> stateMachineType, GeneratedStateMachine<T> companion) {
+        return new StateMachineDescriptor<>(stateMachineType, upToDate(stateMachineType, companion) ? companion : null);
+    }
+
+    private static boolean upToDate(Class<?> stateMachineType, GeneratedStateMachine<?> companion) {
+        if (companion.type() != stateMachineType
+                || (stateMachineType.isSealed() && !companion.states().equals(List.of(stateMachineType.getPermittedSubclasses())))
+                || companion.transitions().size() != companion.states().size()) {
+            return false;
+        }
+        for (int ordinal = 0; ordinal < companion.states().size(); ordinal++) {
+            if (!companion.transitions().get(ordinal).equals(TransitionTable.transitionTypesOf(companion.states().get(ordinal)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("rawtypes") // ServiceLoader can only be given the raw GeneratedStateMachine.class
+    private static GeneratedStateMachine<?> companionOf(Class<?> stateMachineType) {
+        String companion = GeneratedStateMachine.companionName(stateMachineType);
+        try {
+            return ServiceLoader.load(GeneratedStateMachine.class, stateMachineType.getClassLoader())
+                .stream()
+                .filter(provider -> provider.type().getName().equals(companion))
+                .findFirst()
+                .map(ServiceLoader.Provider::get)
+                .filter(metadata -> upToDate(stateMachineType, metadata))
+                .orElse(null);
+        } catch (ServiceConfigurationError e) {
+            throw new IllegalStateException("Unusable generated metadata for " + stateMachineType.getName(), e);
+        }
+    }
+
+    public boolean isGenerated() {
+        return companion != null;
+    }
+
+    public Class<T> type() {
+        return type;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public Class<T>[] values() {
+        return values.clone();
+    }
+
+    @SuppressWarnings("rawtypes") // the raw element type of State.valuesList
+    public List<Class> valuesList() {
+        return valuesList;
+    }
+
+    public Set<Class<T>> valuesSet() {
+        return valuesSet;
+    }
+
+    public Class<T> valueOf(int ordinal) {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException("No state with ordinal " + ordinal + " in " + type.getName());
+        }
+        return values[ordinal];
+    }
+
+    public Class<T> valueOf(String name) {
+        Class<T> value = byName.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("No state " + name + " in " + type.getName());
+        }
+        return value;
+    }
+
+    public int ordinal(Class<?> stateType) {
+        return ordinals.getOrDefault(stateType, -1);
+    }
+
+    int indexOf(Object classOrState) {
+        Class<?> stateType = classOrState instanceof Class ? (Class<?>) classOrState
+            : classOrState instanceof State ? classOrState.getClass()
+            : null;
+        if (stateType == null) {
+            return -1;
+        }
+        TransitionTable table = TransitionTable.of(stateType);
+        return table.descriptor == this ? table.ordinal : ordinal(stateType);
+    }
+
+    int checkedIndexOf(Object classOrState) {
+        int ordinal = indexOf(classOrState);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException(classOrState + " is not a state of " + type.getName());
+        }
+        return ordinal;
+    }
+
+    public String name(int ordinal) {
+        return names[ordinal];
+    }
+
+    public Optional<List<Class<?>>> transitions(int ordinal) {
+        return companion == null
+            ? Optional.empty()
+            : Optional.of(companion.transitions().get(ordinal));
+    }
+
+    public Optional<Supplier<? extends T>> factory(int ordinal) {
+        return companion == null
+            ? Optional.empty()
+            : Optional.ofNullable(companion.factory(ordinal));
+    }
+
+    T sharedInstance(int ordinal) {
+        Object instance = instances[ordinal];
+        if (instance == null) {
+            instance = Flyweights.canonical(values[ordinal]);
+            if (instance == null) {
+                throw new IllegalStateException(names[ordinal] + " is not a @Flyweight state, so there is no shared instance of it. Use its Class or ordinal instead.");
+            }
+            instances[ordinal] = instance;
+        }
+        return values[ordinal].cast(instance);
+    }
+
+    T instanceOrNull(int ordinal) {
+        T instance = Flyweights.canonical(values[ordinal]);
+        if (instance != null) {
+            return instance;
+        }
+        return TransitionTable.of(values[ordinal]).inner ? null : new StateConstructor<>(values[ordinal]).get();
+    }
+}
@@ -0,0 +1,107 @@
+package com.benjiweber.statemachine;
+
+import java.util.*;
+
+public final class StateMap<T extends State<T>, V> extends AbstractMap<Class<? extends T>, V> {
+    private final StateMachineDescriptor<T> descriptor;
+    private final Object[] values;
+    private int size;
+
+    private StateMap(StateMachineDescriptor<T> descriptor) {
+        this.descriptor = descriptor;
+        this.values = new Object[descriptor.size()];
+    }
+
+    public static <T extends State<T>, V> StateMap<T, V> of(Class<T> stateMachineType) {
+        return new StateMap<>(StateMachineDescriptor.of(stateMachineType));
+    }
+
+    @Override
+    public V get(Object classOrState) {
+        int ordinal = descriptor.indexOf(classOrState);
+        return ordinal < 0 ? null : value(ordinal);
+    }
+
+    @Override
+    public boolean containsKey(Object classOrState) {
+        return get(classOrState) != null;
+    }
+
+    @Override
+    public V put(Class<? extends T> state, V value) {
+        return put(descriptor.checkedIndexOf(state), Objects.requireNonNull(value));
+    }
+
+    @Override
+    public V remove(Object classOrState) {
+        int ordinal = descriptor.indexOf(classOrState);
+        return ordinal < 0 ? null : put(ordinal, null);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<Class<? extends T>, V>> entrySet() {
+        return new AbstractSet<>() {
+            public int size() {
+                return size;
+            }
+
+            public Iterator<Entry<Class<? extends T>, V>> iterator() {
+                return new Iterator<>() {
+                    private int next = advance(0);
+                    private int last = -1;
+
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    public Entry<Class<? extends T>, V> next() {
+                        if (next >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        last = next;
+                        next = advance(next + 1);
+                        return new SimpleImmutableEntry<>(descriptor.valueOf(last), value(last));
+                    }
+
+                    public void remove() {
+                        if (last < 0) {
+                            throw new IllegalStateException();
+                        }
+                        put(last, null);
+                        last = -1;
+                    }
+                };
+            }
+        };
+    }
+
+    private int advance(int from) {
+        while (from < values.length && values[from] == null) {
+            from++;
+        }
+        return from;
+    }
+
+    @SuppressWarnings("unchecked") // values only ever holds Vs
+    private V value(int ordinal) {
+        return (V) values[ordinal];
+    }
+
+    private V put(int ordinal, V value) {
+        V previous = value(ordinal);
+        values[ordinal] = value;
+        size += (value != null ? 1 : 0) - (previous != null ? 1 : 0);
+        return previous;
+    }
+}
@@ -0,0 +1,182 @@
+package com.benjiweber.statemachine;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public final class StateSet<T extends State<T>> extends AbstractSet<Class<? extends T>> {
+    private final StateMachineDescriptor<T> descriptor;
+    private long bits;
+
+    private StateSet(StateMachineDescriptor<T> descriptor, long bits) {
+        if (descriptor.size() > Long.SIZE) {
+            throw new IllegalArgumentException(descriptor.type().getName() + " has too many states for a StateSet.");
+        }
+        this.descriptor = descriptor;
+        this.bits = bits;
+    }
+
+    public static <T extends State<T>> StateSet<T> noneOf(Class<T> stateMachineType) {
+        return new StateSet<>(StateMachineDescriptor.of(stateMachineType), 0);
+    }
+
+    public static <T extends State<T>> StateSet<T> allOf(Class<T> stateMachineType) {
+        StateMachineDescriptor<T> descriptor = StateMachineDescriptor.of(stateMachineType);
+        return new StateSet<>(descriptor, all(descriptor));
+    }
+
+    @SafeVarargs
+    public static <T extends State<T>> StateSet<T> of(Class<T> stateMachineType, Class<? extends T>... states) {
+        StateSet<T> set = noneOf(stateMachineType);
+        for (Class<? extends T> state : states) {
+            set.add(state);
+        }
+        return set;
+    }
+
+    public StateSet<T> complement() {
+        return new StateSet<>(descriptor, ~bits & all(descriptor));
+    }
+
+    public StateSet<T> copy() {
+        return new StateSet<>(descriptor, bits);
+    }
+
+    public boolean contains(int ordinal) {
+        return ordinal >= 0 && ordinal < descriptor.size() && (bits & (1L << ordinal)) != 0;
+    }
+
+    @Override
+    public boolean contains(Object classOrState) {
+        return contains(descriptor.indexOf(classOrState));
+    }
+
+    @Override
+    public boolean add(Class<? extends T> state) {
+        long before = bits;
+        bits |= 1L << descriptor.checkedIndexOf(state);
+        return bits != before;
+    }
+
+    public boolean add(T state) {
+        long before = bits;
+        bits |= 1L << descriptor.checkedIndexOf(state);
+        return bits != before;
+    }
+
+    @Override
+    public boolean remove(Object classOrState) {
+        int ordinal = descriptor.indexOf(classOrState);
+        if (!contains(ordinal)) {
+            return false;
+        }
+        bits &= ~(1L << ordinal);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Class<? extends T>> states) {
+        if (!sameMachine(states)) {
+            return super.addAll(states);
+        }
+        long before = bits;
+        bits |= ((StateSet<?>) states).bits;
+        return bits != before;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> states) {
+        if (!sameMachine(states)) {
+            return super.retainAll(states);
+        }
+        long before = bits;
+        bits &= ((StateSet<?>) states).bits;
+        return bits != before;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> states) {
+        if (!sameMachine(states)) {
+            return super.removeAll(states);
+        }
+        long before = bits;
+        bits &= ~((StateSet<?>) states).bits;
+        return bits != before;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> states) {
+        if (!sameMachine(states)) {
+            return super.containsAll(states);
+        }
+        long other = ((StateSet<?>) states).bits;
+        return (bits & other) == other;
+    }
+
+    @Override
+    public void clear() {
+        bits = 0;
+    }
+
+    @Override
+    public int size() {
+        return Long.bitCount(bits);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    @Override
+    public Iterator<Class<? extends T>> iterator() {
+        return new Iterator<>() {
+            private long remaining = bits;
+            private int last = -1;
+
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+
+            public Class<? extends T> next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                last = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return descriptor.valueOf(last);
+            }
+
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                bits &= ~(1L << last);
+                last = -1;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof StateSet) {
+            StateSet<?> set = (StateSet<?>) other;
+            return set.descriptor == descriptor && set.bits == bits;
+        }
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    private boolean sameMachine(Collection<?> states) {
+        return states instanceof StateSet && ((StateSet<?>) states).descriptor == descriptor;
+    }
+
+    private static long all(StateMachineDescriptor<?> descriptor) {
+        return descriptor.size() == Long.SIZE ? -1L : (1L << descriptor.size()) - 1;
+    }
+}
@@ -0,0 +1,183 @@
+package com.benjiweber.statemachine;
+
+import java.util.Arrays;
+
+public final class StateStore<T extends State<T>> {
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final long MAX_ID = ((long) Integer.MAX_VALUE << PAGE_BITS) | PAGE_MASK;
+
+    private final StateMachineDescriptor<T> descriptor;
+    private byte[][] pages = new byte[16][];
+    private long size;
+
+    public interface Entries<T> {
+        void accept(long id, Class<? extends T> state);
+    }
+
+    public interface Ordinals {
+        void accept(long id, int ordinal);
+    }
+
+    public StateStore(Class<T> stateMachineType) {
+        this.descriptor = StateMachineDescriptor.of(stateMachineType);
+        if (descriptor.size() > 255) {
+            throw new IllegalArgumentException(stateMachineType.getName() + " has too many states to store as a byte.");
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean contains(long id) {
+        return ordinal(id) >= 0;
+    }
+
+    public int ordinal(long id) {
+        checkId(id);
+        int page = (int) (id >>> PAGE_BITS);
+        if (page >= pages.length || pages[page] == null) {
+            return -1;
+        }
+        return (pages[page][(int) id & PAGE_MASK] & 0xFF) - 1;
+    }
+
+    public Class<T> type(long id) {
+        int ordinal = ordinal(id);
+        return ordinal < 0 ? null : descriptor.valueOf(ordinal);
+    }
+
+    public T get(long id) {
+        int ordinal = ordinal(id);
+        return ordinal < 0 ? null : descriptor.sharedInstance(ordinal);
+    }
+
+    public void put(long id, T state) {
+        if (TransitionTable.of(state.getClass()).hasFields) {
+            throw new IllegalArgumentException(state.getClass().getName() + " has fields, which a StateStore cannot keep. Store its type with put(id, Class) instead.");
+        }
+        put(id, state.getClass());
+    }
+
+    public void put(long id, Class<?> stateType) {
+        int ordinal = descriptor.ordinal(stateType);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException(stateType.getName() + " is not a state of " + descriptor.type().getName());
+        }
+        putOrdinal(id, ordinal);
+    }
+
+    public void putOrdinal(long id, int ordinal) {
+        checkId(id);
+        byte[] page = page(id);
+        int slot = (int) id & PAGE_MASK;
+        if (page[slot] == 0) size++;
+        page[slot] = (byte) (ordinal + 1);
+    }
+
+    public void remove(long id) {
+        checkId(id);
+        int page = (int) (id >>> PAGE_BITS);
+        if (page < pages.length && pages[page] != null && pages[page][(int) id & PAGE_MASK] != 0) {
+            pages[page][(int) id & PAGE_MASK] = 0;
+            size--;
+        }
+    }
+
+    public <DESIRED extends T> boolean tryTransition(long id, NextState<DESIRED> desired) {
+        int from = ordinal(id);
+        if (from < 0) {
+            return false;
+        }
+        TransitionEvent event = Guards.begin();
+        Class<DESIRED> target = desired.type();
+        TransitionTable fromTable = TransitionTable.of(descriptor.valueOf(from));
+        if (!fromTable.permits(target)) {
+            if (Guards.observed()) {
+                rejected(from, target);
+            }
+            return false;
+        }
+        int to = descriptor.ordinal(target);
+        if (to < 0) {
+            return false;
+        }
+        boolean guarded = fromTable.hasGuards || TransitionTable.of(target).hasGuards;
+        if (guarded || Guards.observed()) {
+            T fromState = descriptor.instanceOrNull(from);
+            if (fromState != null) {
+                return Guards.apply(event, fromState, desired.get(), () -> {
+                    putOrdinal(id, to);
+                    return true;
+                });
+            }
+            if (guarded) {
+                throw new IllegalStateException(descriptor.name(from) + " is an inner class, so the guards for this transition cannot run without its enclosing instance.");
+            }
+        }
+        putOrdinal(id, to);
+        return true;
+    }
+
+    public void forEach(Entries<T> entries) {
+        forEachOrdinal((id, ordinal) -> entries.accept(id, descriptor.valueOf(ordinal)));
+    }
+
+    public void forEachOrdinal(Ordinals ordinals) {
+        for (int page = 0; page < pages.length; page++) {
+            byte[] entries = pages[page];
+            if (entries == null) continue;
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                if (entries[slot] != 0) {
+                    ordinals.accept(((long) page << PAGE_BITS) | slot, (entries[slot] & 0xFF) - 1);
+                }
+            }
+        }
+    }
+
+    public long count(Class<? extends T> stateType) {
+        int ordinal = descriptor.ordinal(stateType);
+        if (ordinal < 0) return 0;
+        byte stored = (byte) (ordinal + 1);
+        long count = 0;
+        for (byte[] entries : pages) {
+            if (entries == null) continue;
+            for (byte entry : entries) {
+                if (entry == stored) count++;
+            }
+        }
+        return count;
+    }
+
+    StateMachineDescriptor<T> descriptor() {
+        return descriptor;
+    }
+
+    private void rejected(int from, Class<?> target) {
+        T fromState = descriptor.instanceOrNull(from);
+        if (fromState != null) {
+            TransitionListeners.rejected(fromState, target);
+        } else if (Guards.recording) {
+            RejectionEvent.emit(descriptor.valueOf(from), target);
+        }
+    }
+
+    private byte[] page(long id) {
+        int page = (int) (id >>> PAGE_BITS);
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+        }
+        if (pages[page] == null) {
+            pages[page] = new byte[PAGE_SIZE];
+        }
+        return pages[page];
+    }
+
+    private static void checkId(long id) {
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("Entity id out of range: " + id);
+        }
+    }
+}
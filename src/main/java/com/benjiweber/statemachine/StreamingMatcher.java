@@ -0,0 +1,101 @@
+package com.benjiweber.statemachine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+public final class StreamingMatcher<T extends State<T>> {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Dfa<T> dfa;
+    private int row;
+    private long consumed;
+    private byte[] bytes;
+    private char[] chars;
+
+    StreamingMatcher(Dfa<T> dfa) {
+        this.dfa = dfa;
+        this.row = dfa.initial();
+    }
+
+    public StreamingMatcher<T> feed(CharSequence chunk) {
+        row = dfa.advance(row, chunk, 0, chunk.length());
+        consumed += chunk.length();
+        return this;
+    }
+
+    public StreamingMatcher<T> feed(char[] chunk, int offset, int length) {
+        row = dfa.advance(row, chunk, offset, offset + length);
+        consumed += length;
+        return this;
+    }
+
+    public StreamingMatcher<T> feed(byte[] chunk, int offset, int length) {
+        row = dfa.advance(row, chunk, offset, offset + length);
+        consumed += length;
+        return this;
+    }
+
+    public StreamingMatcher<T> feed(CharBuffer chunk) {
+        int length = chunk.remaining();
+        if (chunk.hasArray()) {
+            feed(chunk.array(), chunk.arrayOffset() + chunk.position(), length);
+        } else {
+            feed((CharSequence) chunk);
+        }
+        chunk.position(chunk.limit());
+        return this;
+    }
+
+    public StreamingMatcher<T> feed(ByteBuffer chunk) {
+        int length = chunk.remaining();
+        if (chunk.hasArray()) {
+            feed(chunk.array(), chunk.arrayOffset() + chunk.position(), length);
+        } else {
+            row = dfa.advance(row, chunk, chunk.position(), chunk.limit());
+            consumed += length;
+        }
+        chunk.position(chunk.limit());
+        return this;
+    }
+
+    public StreamingMatcher<T> feed(InputStream in) throws IOException {
+        if (bytes == null) bytes = new byte[BUFFER_SIZE];
+        for (int read; (read = in.read(bytes)) >= 0; ) {
+            feed(bytes, 0, read);
+        }
+        return this;
+    }
+
+    public StreamingMatcher<T> feed(Reader in) throws IOException {
+        if (chars == null) chars = new char[BUFFER_SIZE];
+        for (int read; (read = in.read(chars)) >= 0; ) {
+            feed(chars, 0, read);
+        }
+        return this;
+    }
+
+    public T result() {
+        return dfa.instance(dfa.resultOrdinal(row));
+    }
+
+    public Class<T> resultType() {
+        return dfa.descriptor().valueOf(dfa.resultOrdinal(row));
+    }
+
+    public boolean accepts(Class<?> marker) {
+        return marker.isAssignableFrom(resultType());
+    }
+
+    public long consumed() {
+        return consumed;
+    }
+
+    public StreamingMatcher<T> reset() {
+        row = dfa.initial();
+        consumed = 0;
+        return this;
+    }
+}
@@ -0,0 +1,297 @@
+package com.benjiweber.statemachine;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+public final class TimedTransitions<T extends State<T>> {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 6;
+    private static final long MAX_DELAY = (1L << (WHEEL_BITS * LEVELS)) - 1;
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int NONE = -1;
+
+    private final StateStore<T> store;
+    private final LongSupplier clock;
+    private final long tickMillis;
+    private final long startMillis;
+    private final long[] timeouts;
+    private final NextState<? extends T>[] targets;
+
+    private final int[] heads = new int[LEVELS * WHEEL_SIZE];
+    private final long[] scheduledInLevel = new long[LEVELS];
+    private long currentTick;
+
+    private long[] ids = new long[1024];
+    private long[] deadlines = new long[1024];
+    private int[] ordinals = new int[1024];
+    private int[] next = new int[1024];
+    private int[] prev = new int[1024];
+    private int[] slots = new int[1024];
+    private int allocated;
+    private int free = NONE;
+    private long pending;
+
+    private int[][] nodesById = new int[16][];
+
+    private TimedTransitions(Builder<T> builder) {
+        this.store = builder.store;
+        this.clock = builder.clock;
+        this.tickMillis = builder.tickMillis;
+        this.startMillis = clock.getAsLong();
+        this.timeouts = builder.timeouts.clone();
+        this.targets = builder.targets.clone();
+        Arrays.fill(heads, NONE);
+    }
+
+    public static <T extends State<T>> Builder<T> builder(StateStore<T> store) {
+        return new Builder<>(store);
+    }
+
+    public <DESIRED extends T> boolean tryTransition(long id, NextState<DESIRED> desired) {
+        if (!store.tryTransition(id, desired)) {
+            return false;
+        }
+        entered(id);
+        return true;
+    }
+
+    public void entered(long id) {
+        cancel(id);
+        int ordinal = store.ordinal(id);
+        if (ordinal < 0 || timeouts[ordinal] < 0) {
+            return;
+        }
+        long deadline = (clock.getAsLong() - startMillis + timeouts[ordinal] + tickMillis - 1) / tickMillis;
+        int node = allocate(id, ordinal, Math.max(deadline, currentTick + 1));
+        insert(node);
+        nodesById(id, true)[(int) id & PAGE_MASK] = node + 1;
+    }
+
+    public boolean cancel(long id) {
+        int[] page = nodesById(id, false);
+        int slot = (int) id & PAGE_MASK;
+        if (page == null || page[slot] == 0) {
+            return false;
+        }
+        int node = page[slot] - 1;
+        page[slot] = 0;
+        unlink(node);
+        release(node);
+        return true;
+    }
+
+    public boolean isScheduled(long id) {
+        int[] page = nodesById(id, false);
+        return page != null && page[(int) id & PAGE_MASK] != 0;
+    }
+
+    public long pending() {
+        return pending;
+    }
+
+    public int advance() {
+        long now = (clock.getAsLong() - startMillis) / tickMillis;
+        int transitioned = 0;
+        while (currentTick < now) {
+            int level = lowestScheduledLevel();
+            if (level < 0) {
+                currentTick = now;
+                break;
+            }
+            if (level > 0) {
+                long span = 1L << (WHEEL_BITS * level);
+                currentTick = Math.min(now, (currentTick | (span - 1)) + 1) - 1;
+            }
+            currentTick++;
+            cascade();
+            transitioned += expire((int) currentTick & WHEEL_MASK);
+        }
+        return transitioned;
+    }
+
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            int slot = level * WHEEL_SIZE + ((int) (currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            int node = heads[slot];
+            heads[slot] = NONE;
+            while (node != NONE) {
+                int following = next[node];
+                scheduledInLevel[level]--;
+                insert(node);
+                node = following;
+            }
+        }
+    }
+
+    private int expire(int slot) {
+        int transitioned = 0;
+        int later = NONE;
+        int node;
+        while ((node = heads[slot]) != NONE) {
+            unlink(node);
+            if (deadlines[node] > currentTick) {
+                next[node] = later;
+                later = node;
+                continue;
+            }
+            long id = ids[node];
+            int ordinal = ordinals[node];
+            nodesById(id, false)[(int) id & PAGE_MASK] = 0;
+            release(node);
+            if (store.ordinal(id) == ordinal && tryTransition(id, targets[ordinal])) {
+                transitioned++;
+            }
+        }
+        while (later != NONE) {
+            int following = next[later];
+            insert(later);
+            later = following;
+        }
+        return transitioned;
+    }
+
+    private int lowestScheduledLevel() {
+        for (int level = 0; level < LEVELS; level++) {
+            if (scheduledInLevel[level] > 0) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int node) {
+        long deadline = deadlines[node];
+        long delay = Math.min(Math.max(deadline - currentTick, 1), MAX_DELAY);
+        int level = 0;
+        while (delay >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        long due = Math.min(deadline, currentTick + MAX_DELAY);
+        int slot = level * WHEEL_SIZE + ((int) (due >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        slots[node] = slot;
+        scheduledInLevel[level]++;
+        prev[node] = NONE;
+        next[node] = heads[slot];
+        if (heads[slot] != NONE) {
+            prev[heads[slot]] = node;
+        }
+        heads[slot] = node;
+    }
+
+    private void unlink(int node) {
+        scheduledInLevel[slots[node] / WHEEL_SIZE]--;
+        if (prev[node] != NONE) {
+            next[prev[node]] = next[node];
+        } else {
+            heads[slots[node]] = next[node];
+        }
+        if (next[node] != NONE) {
+            prev[next[node]] = prev[node];
+        }
+    }
+
+    private int allocate(long id, int ordinal, long deadline) {
+        int node;
+        if (free != NONE) {
+            node = free;
+            free = next[node];
+        } else {
+            if (allocated == ids.length) {
+                grow();
+            }
+            node = allocated++;
+        }
+        ids[node] = id;
+        ordinals[node] = ordinal;
+        deadlines[node] = deadline;
+        pending++;
+        return node;
+    }
+
+    private void release(int node) {
+        next[node] = free;
+        free = node;
+        pending--;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        ordinals = Arrays.copyOf(ordinals, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+    }
+
+    private int[] nodesById(long id, boolean create) {
+        int page = (int) (id >>> PAGE_BITS);
+        if (page < 0) {
+            throw new IllegalArgumentException("Entity id out of range: " + id);
+        }
+        if (page >= nodesById.length) {
+            if (!create) return null;
+            nodesById = Arrays.copyOf(nodesById, Math.max(page + 1, nodesById.length * 2));
+        }
+        if (nodesById[page] == null && create) {
+            nodesById[page] = new int[PAGE_SIZE];
+        }
+        return nodesById[page];
+    }
+
+    public static final class Builder<T extends State<T>> {
+        private final StateStore<T> store;
+        private final StateMachineDescriptor<T> descriptor;
+        private final long[] timeouts;
+        private final NextState<? extends T>[] targets;
+        private LongSupplier clock = System::currentTimeMillis;
+        private long tickMillis = 100;
+
+        @SuppressWarnings({"unchecked", "rawtypes"}) // generic array creation
+        private Builder(StateStore<T> store) {
+            this.store = store;
+            this.descriptor = store.descriptor();
+            this.timeouts = new long[descriptor.size()];
+            this.targets = new NextState[descriptor.size()];
+            Arrays.fill(timeouts, -1);
+        }
+
+        public Builder<T> clock(LongSupplier millis) {
+            this.clock = millis;
+            return this;
+        }
+
+        public Builder<T> tick(Duration tick) {
+            if (tick.toMillis() <= 0) {
+                throw new IllegalArgumentException("Tick must be at least a millisecond: " + tick);
+            }
+            this.tickMillis = tick.toMillis();
+            return this;
+        }
+
+        public <DESIRED extends T> Builder<T> after(Class<? extends T> state, Duration timeout, NextState<DESIRED> target) {
+            int ordinal = descriptor.ordinal(state);
+            if (ordinal < 0) {
+                throw new IllegalArgumentException(state.getName() + " is not a state of " + descriptor.type().getName());
+            }
+            if (!TransitionTable.of(state).permits(target.type())) {
+                throw new IllegalArgumentException(descriptor.name(ordinal) + " cannot transition to " + target.type().getSimpleName());
+            }
+            timeouts[ordinal] = timeout.toMillis();
+            targets[ordinal] = target;
+            return this;
+        }
+
+        public TimedTransitions<T> build() {
+            return new TimedTransitions<>(this);
+        }
+    }
+}
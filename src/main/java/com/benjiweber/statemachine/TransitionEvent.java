@@ -0,0 +1,36 @@
+package com.benjiweber.statemachine;
+
+import jdk.jfr.*;
+
+@Name("com.benjiweber.statemachine.Transition")
+@Label("State Transition")
+@Category("State Machine")
+@Description("A completed transition. The duration covers resolving and checking the target, the guards, and for asynchronous transitions the side effects.")
+@Enabled(false)
+@StackTrace(false)
+final class TransitionEvent extends Event {
+    @Label("Machine")
+    Class<?> machine;
+
+    @Label("From")
+    Class<?> from;
+
+    @Label("To")
+    Class<?> to;
+
+    static TransitionEvent started() {
+        TransitionEvent event = new TransitionEvent();
+        event.begin();
+        return event;
+    }
+
+    void completed(Object from, Object to) {
+        end();
+        if (shouldCommit()) {
+            this.machine = TransitionTable.of(to.getClass()).domainType;
+            this.from = from.getClass();
+            this.to = to.getClass();
+            commit();
+        }
+    }
+}
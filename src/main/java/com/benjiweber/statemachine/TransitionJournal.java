@@ -0,0 +1,241 @@
+package com.benjiweber.statemachine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.stream.Collectors.toList;
+
+public final class TransitionJournal implements Closeable {
+    static final int ENTRY_SIZE = 24;
+    static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x53544a4c;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".journal";
+    private static final int DEFAULT_SEGMENT_ENTRIES = 1 << 22;
+
+    private final Path directory;
+    private final int segmentEntries;
+    private final Object forceLock = new Object();
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private int segmentCapacity;
+    private int entriesInSegment;
+    private int forcedInSegment;
+    private long appended;
+    private volatile long durable;
+
+    public interface Entries {
+        void accept(long entityId, int fromOrdinal, int toOrdinal, long timestamp);
+    }
+
+    private TransitionJournal(Path directory, int segmentEntries) throws IOException {
+        this.directory = directory;
+        this.segmentEntries = segmentEntries;
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            segmentNumber = segmentNumberOf(last);
+            try (FileChannel channel = FileChannel.open(last, READ, WRITE)) {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            segmentCapacity = readHeader(segment, last);
+            entriesInSegment = validEntries(segment, segmentCapacity);
+            forcedInSegment = entriesInSegment;
+            clearTail(segment, entriesInSegment, segmentCapacity);
+            for (Path earlier : segments.subList(0, segments.size() - 1)) {
+                appended += capacityOf(earlier);
+            }
+            appended += entriesInSegment;
+            durable = appended;
+        }
+    }
+
+    public static TransitionJournal open(Path directory) throws IOException {
+        return new TransitionJournal(directory, DEFAULT_SEGMENT_ENTRIES);
+    }
+
+    public static TransitionJournal open(Path directory, int segmentEntries) throws IOException {
+        if (segmentEntries <= 0 || (long) segmentEntries * ENTRY_SIZE + HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentEntries);
+        }
+        return new TransitionJournal(directory, segmentEntries);
+    }
+
+    public <T extends State<T>> long append(long entityId, T from, T to) {
+        return append(entityId, from.ordinal(), to.ordinal(), System.currentTimeMillis());
+    }
+
+    public synchronized long append(long entityId, int fromOrdinal, int toOrdinal, long timestamp) {
+        if (entriesInSegment == segmentCapacity) {
+            roll();
+        }
+        int offset = HEADER_SIZE + entriesInSegment * ENTRY_SIZE;
+        segment.putLong(offset, entityId);
+        segment.putLong(offset + 8, timestamp);
+        segment.putShort(offset + 16, (short) fromOrdinal);
+        segment.putShort(offset + 18, (short) toOrdinal);
+        segment.putInt(offset + 20, check(entityId, timestamp, fromOrdinal & 0xFFFF, toOrdinal & 0xFFFF));
+        entriesInSegment++;
+        return ++appended;
+    }
+
+    public void sync() {
+        sync(Long.MAX_VALUE);
+    }
+
+    public void sync(long sequence) {
+        if (durable >= sequence) return;
+        synchronized (forceLock) {
+            if (durable >= sequence) return;
+            MappedByteBuffer toForce;
+            int from;
+            int to;
+            long upTo;
+            synchronized (this) {
+                toForce = segment;
+                from = forcedInSegment;
+                to = entriesInSegment;
+                upTo = appended;
+                forcedInSegment = to;
+            }
+            if (to > from) {
+                toForce.force(HEADER_SIZE + from * ENTRY_SIZE, (to - from) * ENTRY_SIZE);
+            }
+            durable = upTo;
+        }
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+    public static void replay(Path directory, Entries entries) throws IOException {
+        for (Path path : segments(directory)) {
+            try (FileChannel channel = FileChannel.open(path, READ)) {
+                ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int capacity = readHeader(segment, path);
+                for (int i = 0; i < capacity; i++) {
+                    int offset = HEADER_SIZE + i * ENTRY_SIZE;
+                    long entityId = segment.getLong(offset);
+                    long timestamp = segment.getLong(offset + 8);
+                    int from = segment.getShort(offset + 16) & 0xFFFF;
+                    int to = segment.getShort(offset + 18) & 0xFFFF;
+                    if (segment.getInt(offset + 20) != check(entityId, timestamp, from, to)) {
+                        return;
+                    }
+                    entries.accept(entityId, from, to, timestamp);
+                }
+            }
+        }
+    }
+
+    public static <T extends State<T>> void replay(Path directory, StateStore<T> into) throws IOException {
+        replay(directory, (entityId, from, to, timestamp) -> into.putOrdinal(entityId, to));
+    }
+
+    private void roll() {
+        if (entriesInSegment > forcedInSegment) {
+            segment.force(HEADER_SIZE + forcedInSegment * ENTRY_SIZE, (entriesInSegment - forcedInSegment) * ENTRY_SIZE);
+        }
+        try {
+            openSegment(segmentNumber + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        Path path = directory.resolve(String.format("%016d%s", number, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, CREATE_NEW, READ, WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) segmentEntries * ENTRY_SIZE);
+        }
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, VERSION);
+        segment.putInt(8, ENTRY_SIZE);
+        segment.putInt(12, segmentEntries);
+        segment.force(0, HEADER_SIZE);
+        segmentNumber = number;
+        segmentCapacity = segmentEntries;
+        entriesInSegment = 0;
+        forcedInSegment = 0;
+    }
+
+    private static int readHeader(ByteBuffer segment, Path path) {
+        if (segment.capacity() < HEADER_SIZE
+                || segment.getInt(0) != MAGIC
+                || segment.getInt(4) != VERSION
+                || segment.getInt(8) != ENTRY_SIZE) {
+            throw new IllegalStateException(path + " is not a transition journal segment.");
+        }
+        return Math.min(segment.getInt(12), (segment.capacity() - HEADER_SIZE) / ENTRY_SIZE);
+    }
+
+    private static void clearTail(MappedByteBuffer segment, int from, int capacity) {
+        int end = from;
+        for (int i = from; i < capacity; i++) {
+            if (segment.getInt(HEADER_SIZE + i * ENTRY_SIZE + 20) != 0) {
+                end = i + 1;
+            }
+        }
+        if (end == from) return;
+        for (int offset = HEADER_SIZE + from * ENTRY_SIZE; offset < HEADER_SIZE + end * ENTRY_SIZE; offset += 8) {
+            segment.putLong(offset, 0);
+        }
+        segment.force(HEADER_SIZE + from * ENTRY_SIZE, (end - from) * ENTRY_SIZE);
+    }
+
+    private static int capacityOf(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            return readHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path);
+        }
+    }
+
+    private static int validEntries(ByteBuffer segment, int capacity) {
+        for (int i = 0; i < capacity; i++) {
+            int offset = HEADER_SIZE + i * ENTRY_SIZE;
+            int from = segment.getShort(offset + 16) & 0xFFFF;
+            int to = segment.getShort(offset + 18) & 0xFFFF;
+            if (segment.getInt(offset + 20) != check(segment.getLong(offset), segment.getLong(offset + 8), from, to)) {
+                return i;
+            }
+        }
+        return capacity;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                .sorted()
+                .collect(toList());
+        }
+    }
+
+    private static long segmentNumberOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    static int check(long entityId, long timestamp, int from, int to) {
+        long hash = entityId * 0x9E3779B97F4A7C15L
+            ^ timestamp * 0xC2B2AE3D27D4EB4FL
+            ^ ((long) from << 16 | to) * 0x165667B19E3779F9L;
+        return (int) (hash ^ (hash >>> 32)) | 1;
+    }
+}
@@ -0,0 +1,6 @@
+package com.benjiweber.statemachine;
+
+public interface TransitionListener {
+    default void onTransition(State<?> from, State<?> to, long guardNanos) {}
+    default void onRejected(State<?> from, Class<?> target) {}
+}
@@ -0,0 +1,95 @@
+package com.benjiweber.statemachine;
+
+import java.util.Arrays;
+
+public final class TransitionListeners {
+    private static final TransitionListener[] NONE = {};
+
+    private static volatile int registrations;
+    private static volatile TransitionListener[] global = NONE;
+
+    private TransitionListeners() {}
+
+    public interface Registration extends AutoCloseable {
+        void close();
+    }
+
+    public static synchronized Registration register(TransitionListener listener) {
+        global = with(global, listener);
+        registrations++;
+        Guards.observersChanged();
+        return () -> {
+            synchronized (TransitionListeners.class) {
+                TransitionListener[] remaining = without(global, listener);
+                if (remaining.length < global.length) registrations--;
+                Guards.observersChanged();
+                global = remaining;
+            }
+        };
+    }
+
+    public static synchronized <T extends State<T>> Registration register(Class<T> stateMachineType, TransitionListener listener) {
+        StateMachineDescriptor<T> descriptor = StateMachineDescriptor.of(stateMachineType);
+        descriptor.listeners = with(descriptor.listeners, listener);
+        registrations++;
+        Guards.observersChanged();
+        return () -> {
+            synchronized (TransitionListeners.class) {
+                TransitionListener[] remaining = without(descriptor.listeners, listener);
+                if (remaining.length < descriptor.listeners.length) registrations--;
+                Guards.observersChanged();
+                descriptor.listeners = remaining;
+            }
+        };
+    }
+
+    static boolean active() {
+        return registrations > 0;
+    }
+
+    static void transitioned(Object from, Object to, long guardNanos) {
+        if (!(from instanceof State) || !(to instanceof State)) return;
+        for (TransitionListener listener : global) {
+            listener.onTransition((State<?>) from, (State<?>) to, guardNanos);
+        }
+        for (TransitionListener listener : machineListeners(from)) {
+            listener.onTransition((State<?>) from, (State<?>) to, guardNanos);
+        }
+    }
+
+    static void rejected(Object from, Class<?> target) {
+        if (Guards.recording) {
+            RejectionEvent.emit(from.getClass(), target);
+        }
+        if (!active() || !(from instanceof State)) return;
+        for (TransitionListener listener : global) {
+            listener.onRejected((State<?>) from, target);
+        }
+        for (TransitionListener listener : machineListeners(from)) {
+            listener.onRejected((State<?>) from, target);
+        }
+    }
+
+    private static TransitionListener[] machineListeners(Object from) {
+        StateMachineDescriptor<?> descriptor = TransitionTable.of(from.getClass()).descriptor;
+        return descriptor == null ? NONE : descriptor.listeners;
+    }
+
+    private static TransitionListener[] with(TransitionListener[] listeners, TransitionListener listener) {
+        TransitionListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        return added;
+    }
+
+    private static TransitionListener[] without(TransitionListener[] listeners, TransitionListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                TransitionListener[] remaining = new TransitionListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, listeners.length - i - 1);
+                return remaining;
+            }
+        }
+        return listeners;
+    }
+}
@@ -0,0 +1,124 @@
+package com.benjiweber.statemachine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Collections.unmodifiableMap;
+
+public final class TransitionMetrics<T extends State<T>> implements TransitionListener {
+    private final StateMachineDescriptor<T> descriptor;
+    private final LongAdder[] transitions;
+    private final LongAdder[] rejections;
+    private final LatencyHistogram guardLatency = new LatencyHistogram();
+
+    public TransitionMetrics(Class<T> stateMachineType) {
+        this.descriptor = StateMachineDescriptor.of(stateMachineType);
+        int size = descriptor.size();
+        this.transitions = counters(size * size);
+        this.rejections = counters(size * size);
+    }
+
+    public TransitionListeners.Registration register() {
+        return TransitionListeners.register(descriptor.type(), this);
+    }
+
+    @Override
+    public void onTransition(State<?> from, State<?> to, long guardNanos) {
+        int index = index(from.getClass(), to.getClass());
+        if (index >= 0) {
+            transitions[index].increment();
+            guardLatency.record(guardNanos);
+        }
+    }
+
+    @Override
+    public void onRejected(State<?> from, Class<?> target) {
+        int index = index(from.getClass(), target);
+        if (index >= 0) {
+            rejections[index].increment();
+        }
+    }
+
+    public Snapshot snapshot() {
+        int size = descriptor.size();
+        long[] transitioned = new long[size * size];
+        long[] rejected = new long[size * size];
+        for (int i = 0; i < transitioned.length; i++) {
+            transitioned[i] = transitions[i].sum();
+            rejected[i] = rejections[i].sum();
+        }
+        return new Snapshot(descriptor, transitioned, rejected, guardLatency.snapshot());
+    }
+
+    private int index(Class<?> from, Class<?> to) {
+        TransitionTable fromTable = TransitionTable.of(from);
+        TransitionTable toTable = TransitionTable.of(to);
+        if (fromTable.descriptor != descriptor || toTable.descriptor != descriptor) {
+            return -1;
+        }
+        return fromTable.ordinal * descriptor.size() + toTable.ordinal;
+    }
+
+    private static LongAdder[] counters(int size) {
+        LongAdder[] counters = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    public static final class Snapshot {
+        private final StateMachineDescriptor<?> descriptor;
+        private final long[] transitions;
+        private final long[] rejections;
+        private final LatencyHistogram.Snapshot guardLatency;
+
+        private Snapshot(StateMachineDescriptor<?> descriptor, long[] transitions, long[] rejections, LatencyHistogram.Snapshot guardLatency) {
+            this.descriptor = descriptor;
+            this.transitions = transitions;
+            this.rejections = rejections;
+            this.guardLatency = guardLatency;
+        }
+
+        public long transitions(Class<?> from, Class<?> to) {
+            return count(transitions, from, to);
+        }
+
+        public long rejections(Class<?> from, Class<?> to) {
+            return count(rejections, from, to);
+        }
+
+        public LatencyHistogram.Snapshot guardLatency() {
+            return guardLatency;
+        }
+
+        public Map<String, Long> counters() {
+            Map<String, Long> counters = new LinkedHashMap<>();
+            int size = descriptor.size();
+            for (int from = 0; from < size; from++) {
+                for (int to = 0; to < size; to++) {
+                    String edge = descriptor.name(from) + "->" + descriptor.name(to);
+                    if (transitions[from * size + to] > 0) {
+                        counters.put("transitions." + edge, transitions[from * size + to]);
+                    }
+                    if (rejections[from * size + to] > 0) {
+                        counters.put("rejections." + edge, rejections[from * size + to]);
+                    }
+                }
+            }
+            return unmodifiableMap(counters);
+        }
+
+        @Override
+        public String toString() {
+            return descriptor.type().getSimpleName() + " " + counters() + " guards[" + guardLatency + "]";
+        }
+
+        private long count(long[] counts, Class<?> from, Class<?> to) {
+            int fromOrdinal = descriptor.ordinal(from);
+            int toOrdinal = descriptor.ordinal(to);
+            return fromOrdinal < 0 || toOrdinal < 0 ? 0 : counts[fromOrdinal * descriptor.size() + toOrdinal];
+        }
+    }
+}
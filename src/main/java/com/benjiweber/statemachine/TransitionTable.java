@@ -0,0 +1,115 @@
+package com.benjiweber.statemachine;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toUnmodifiableList;
+
+final class TransitionTable {
+    private static final ClassValue<TransitionTable> tables = new ClassValue<>() {
+        protected TransitionTable computeValue(Class<?> stateType) {
+            return new TransitionTable(stateType);
+        }
+    };
+
+    final Class<?> domainType;
+    final StateMachineDescriptor<?> descriptor;
+    final int ordinal;
+    final String name;
+    final boolean hasGuards;
+    final boolean sideEffectBefore;
+    final boolean sideEffectAfter;
+    final boolean inner;
+    final boolean hasFields;
+    private final List<Class<?>> validTransitionTypes;
+    private final long[] row;
+
+    private TransitionTable(Class<?> stateType) {
+        this.domainType = domainTypeOf(stateType);
+        this.descriptor = domainType != null && domainType.isSealed()
+            ? StateMachineDescriptor.forType(domainType)
+            : null;
+        this.ordinal = ordinalOf(stateType);
+        this.name = stateType.getSimpleName();
+        this.hasGuards = guards(stateType, "afterTransition").findAny().isPresent()
+            || guards(stateType, "beforeTransition").findAny().isPresent();
+        this.sideEffectBefore = guards(stateType, "beforeTransition").anyMatch(method -> method.isAnnotationPresent(SideEffect.class));
+        this.sideEffectAfter = guards(stateType, "afterTransition").anyMatch(method -> method.isAnnotationPresent(SideEffect.class));
+        this.inner = stateType.isMemberClass() && !Modifier.isStatic(stateType.getModifiers());
+        this.hasFields = Flyweights.hasFields(stateType);
+        this.validTransitionTypes = ordinal >= 0
+            ? descriptor.transitions(ordinal).orElseGet(() -> transitionTypesOf(stateType))
+            : transitionTypesOf(stateType);
+        this.row = new long[descriptor == null ? 0 : (descriptor.size() + 63) >>> 6];
+        validTransitionTypes
+            .stream()
+            .mapToInt(this::ordinalOf)
+            .filter(to -> to >= 0)
+            .forEach(to -> row[to >>> 6] |= 1L << to);
+    }
+
+    static TransitionTable of(Class<?> stateType) {
+        return tables.get(stateType);
+    }
+
+    List<Class<?>> validTransitionTypes() {
+        return validTransitionTypes;
+    }
+
+    boolean permits(Class<?> target) {
+        TransitionTable to = of(target);
+        if (to.ordinal < 0 || to.domainType != domainType) {
+            return validTransitionTypes.contains(target);
+        }
+        return (row[to.ordinal >>> 6] & (1L << to.ordinal)) != 0;
+    }
+
+    private static Stream<Method> guards(Class<?> stateType, String name) {
+        return Stream.of(stateType.getMethods())
+            .filter(method -> method.getName().equals(name))
+            .filter(method -> method.getParameterCount() == 1 && method.getDeclaringClass() != State.class);
+    }
+
+    static List<Class<?>> transitionTypesOf(Class<?> stateType) {
+        return asList(stateType.getGenericInterfaces())
+            .stream()
+            .filter(type -> type instanceof ParameterizedType)
+            .map(type -> (ParameterizedType) type)
+            .filter(TransitionTo::isTransition)
+            .flatMap(type -> asList(type.getActualTypeArguments()).stream())
+            .filter(type -> type instanceof Class)
+            .<Class<?>>map(type -> (Class<?>) type)
+            .collect(toUnmodifiableList());
+    }
+
+    private int ordinalOf(Class<?> stateType) {
+        return descriptor == null ? -1 : descriptor.ordinal(stateType);
+    }
+
+    static Class<?> domainTypeOf(Type type) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            if (parameterized.getRawType() == State.class) {
+                Type domain = parameterized.getActualTypeArguments()[0];
+                return domain instanceof Class ? (Class<?>) domain : null;
+            }
+            return domainTypeOf(parameterized.getRawType());
+        }
+        if (!(type instanceof Class)) {
+            return null;
+        }
+        Class<?> cls = (Class<?>) type;
+        return Stream.concat(
+                Stream.ofNullable(cls.getGenericSuperclass()),
+                Stream.of(cls.getGenericInterfaces()))
+            .map(TransitionTable::domainTypeOf)
+            .filter(domain -> domain != null)
+            .findFirst()
+            .orElse(null);
+    }
+}
@@ -1,21 +1,21 @@
 package com.benjiweber.statemachine;
 
 import java.lang.reflect.ParameterizedType;
-import java.util.function.Supplier;
 
 @Transition
 public interface TransitionTo<T extends StateGuards> {
-    interface OneTransition<T> extends Supplier<T> { }
+    interface OneTransition<T> extends NextState<T> { }
     default T transition(OneTransition<T> constructor) {
-        return withGuards(constructor.get());
+        return Guards.transition(this, constructor);
+    }
+
+    default T transitionShared(OneTransition<T> constructor) {
+        TransitionEvent event = Guards.begin();
+        return Guards.apply(event, this, Flyweights.next(constructor));
     }
 
     default <U extends StateGuards> U withGuards(U next) {
-        if (this instanceof StateGuards) {
-            ((StateGuards)this).beforeTransition(next);
-        }
-        next.afterTransition(this);
-        return next;
+        return Guards.apply(this, next);
     }
 
     static boolean isTransition(ParameterizedType type) {
@@ -1,12 +1,14 @@
 package com.benjiweber.statemachine;
 
-import java.util.function.Supplier;
-
 @Transition
 public interface TriTransitionTo<T extends StateGuards, U extends StateGuards, V extends StateGuards> extends BiTransitionTo<T, U> {
-    interface ThreeTransition<T> extends Supplier<T> { }
+    interface ThreeTransition<T> extends NextState<T> { }
     default V transition(ThreeTransition<V> constructor) {
-        return withGuards(constructor.get());
+        return Guards.transition(this, constructor);
     }
 
+    default V transitionShared(ThreeTransition<V> constructor) {
+        TransitionEvent event = Guards.begin();
+        return Guards.apply(event, this, Flyweights.next(constructor));
+    }
 }
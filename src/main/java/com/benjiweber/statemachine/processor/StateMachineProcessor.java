@@ -0,0 +1,188 @@
+package com.benjiweber.statemachine.processor;
+
+import com.benjiweber.statemachine.GeneratedStateMachine;
+import com.benjiweber.statemachine.State;
+import com.benjiweber.statemachine.Transition;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+@SupportedAnnotationTypes("*")
+public class StateMachineProcessor extends AbstractProcessor {
+    private static final String STATE = State.class.getName();
+    private static final String TRANSITION = Transition.class.getName();
+
+    private static final String COMPANIONS = "META-INF/services/" + GeneratedStateMachine.class.getName();
+
+    private final Set<String> generated = new HashSet<>();
+    private final List<String> companions = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        ElementFilter.typesIn(roundEnv.getRootElements())
+            .stream()
+            .flatMap(this::withNestedTypes)
+            .filter(this::isStateMachine)
+            .filter(this::isAccessible)
+            .filter(type -> generated.add(type.getQualifiedName().toString()))
+            .forEach(this::generate);
+        if (roundEnv.processingOver() && !companions.isEmpty()) {
+            register();
+        }
+        return false;
+    }
+
+    private void register() {
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createResource(StandardLocation.CLASS_OUTPUT, "", COMPANIONS)
+                .openWriter())) {
+            companions.forEach(out::println);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+        }
+    }
+
+    private Stream<TypeElement> withNestedTypes(TypeElement type) {
+        return Stream.concat(
+            Stream.of(type),
+            ElementFilter.typesIn(type.getEnclosedElements()).stream().flatMap(this::withNestedTypes)
+        );
+    }
+
+    private boolean isStateMachine(TypeElement type) {
+        if (!type.getModifiers().contains(Modifier.SEALED) || !type.getTypeParameters().isEmpty()) {
+            return false;
+        }
+        return Stream.concat(Stream.of(type.getSuperclass()), type.getInterfaces().stream())
+            .filter(supertype -> supertype.getKind() == TypeKind.DECLARED)
+            .map(supertype -> (DeclaredType) supertype)
+            .anyMatch(supertype ->
+                qualifiedName(supertype).equals(STATE)
+                    && supertype.getTypeArguments().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(supertype.getTypeArguments().get(0), type.asType()));
+    }
+
+    private boolean isAccessible(TypeElement machine) {
+        return Stream.concat(Stream.of(machine), permittedSubclasses(machine).stream())
+            .allMatch(this::isAccessibleFromPackage);
+    }
+
+    private boolean isAccessibleFromPackage(TypeElement type) {
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<TypeElement> permittedSubclasses(TypeElement machine) {
+        return machine.getPermittedSubclasses()
+            .stream()
+            .map(type -> (TypeElement) processingEnv.getTypeUtils().asElement(type))
+            .collect(toList());
+    }
+
+    private void generate(TypeElement machine) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(machine).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(machine).toString();
+        String simpleName = GeneratedStateMachine.companionSimpleName(
+            packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1));
+        String machineName = machine.getQualifiedName().toString();
+        List<TypeElement> states = permittedSubclasses(machine);
+        companions.add(qualified(packageName, simpleName));
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(qualified(packageName, simpleName), machine)
+                .openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+            out.println("public final class " + simpleName
+                + " implements " + GeneratedStateMachine.class.getName() + "<" + machineName + "> {");
+            out.println("    private static final java.util.List<Class<? extends " + machineName + ">> STATES = java.util.List.of("
+                + states.stream().map(state -> state.getQualifiedName() + ".class").collect(joining(", ")) + ");");
+            out.println("    private static final java.util.List<String> NAMES = java.util.List.of("
+                + states.stream().map(state -> "\"" + state.getSimpleName() + "\"").collect(joining(", ")) + ");");
+            out.println("    private static final java.util.List<java.util.List<Class<?>>> TRANSITIONS = java.util.List.of(");
+            out.println(states.stream()
+                .map(state -> "        java.util.List.<Class<?>>of(" + transitionsOf(state).collect(joining(", ")) + ")")
+                .collect(joining(",\n")));
+            out.println("    );");
+            out.println();
+            out.println("    public Class<" + machineName + "> type() { return " + machineName + ".class; }");
+            out.println("    public java.util.List<Class<? extends " + machineName + ">> states() { return STATES; }");
+            out.println("    public java.util.List<String> names() { return NAMES; }");
+            out.println("    public java.util.List<java.util.List<Class<?>>> transitions() { return TRANSITIONS; }");
+            out.println();
+            out.println("    public java.util.function.Supplier<? extends " + machineName + "> factory(int ordinal) {");
+            out.println("        switch (ordinal) {");
+            for (int ordinal = 0; ordinal < states.size(); ordinal++) {
+                if (hasAccessibleNoArgConstructor(states.get(ordinal))) {
+                    out.println("            case " + ordinal + ": return " + states.get(ordinal).getQualifiedName() + "::new;");
+                }
+            }
+            out.println("            default: return null;");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), machine);
+        }
+    }
+
+    private Stream<String> transitionsOf(TypeElement state) {
+        return state.getInterfaces()
+            .stream()
+            .filter(type -> type.getKind() == TypeKind.DECLARED)
+            .map(type -> (DeclaredType) type)
+            .filter(type -> type.asElement().getAnnotationMirrors()
+                .stream()
+                .anyMatch(annotation -> qualifiedName(annotation.getAnnotationType()).equals(TRANSITION)))
+            .flatMap(type -> type.getTypeArguments().stream())
+            .filter(type -> type.getKind() == TypeKind.DECLARED)
+            .map(type -> qualifiedName((DeclaredType) processingEnv.getTypeUtils().erasure(type)) + ".class");
+    }
+
+    private boolean hasAccessibleNoArgConstructor(TypeElement state) {
+        if (state.getKind() != ElementKind.CLASS
+                || state.getModifiers().contains(Modifier.ABSTRACT)
+                || (state.getNestingKind() == NestingKind.MEMBER && !state.getModifiers().contains(Modifier.STATIC))) {
+            return false;
+        }
+        return ElementFilter.constructorsIn(state.getEnclosedElements())
+            .stream()
+            .anyMatch(constructor -> constructor.getParameters().isEmpty()
+                && !constructor.getModifiers().contains(Modifier.PRIVATE));
+    }
+
+    private static String qualifiedName(DeclaredType type) {
+        return ((TypeElement) type.asElement()).getQualifiedName().toString();
+    }
+
+    private static String qualified(String packageName, String simpleName) {
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+}
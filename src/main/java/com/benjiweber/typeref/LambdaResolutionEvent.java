@@ -0,0 +1,32 @@
+package com.benjiweber.typeref;
+
+import jdk.jfr.*;
+
+@Name("com.benjiweber.statemachine.LambdaResolution")
+@Label("Lambda Resolution")
+@Category("State Machine")
+@Description("The one-off reflective lookup of the type a method reference produces.")
+@Enabled(false)
+@StackTrace(false)
+final class LambdaResolutionEvent extends Event {
+    @Label("Lambda Class")
+    Class<?> lambdaClass;
+
+    @Label("Produced Type")
+    Class<?> producedType;
+
+    static LambdaResolutionEvent started() {
+        LambdaResolutionEvent event = new LambdaResolutionEvent();
+        event.begin();
+        return event;
+    }
+
+    void completed(Class<?> lambdaClass, Class<?> producedType) {
+        end();
+        if (shouldCommit()) {
+            this.lambdaClass = lambdaClass;
+            this.producedType = producedType;
+            commit();
+        }
+    }
+}
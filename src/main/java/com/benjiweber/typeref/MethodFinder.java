@@ -4,9 +4,6 @@ import java.io.Serializable;
 import java.lang.invoke.SerializedLambda;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
-import java.util.Objects;
-
-import static java.util.Arrays.asList;
 
 public interface MethodFinder extends Serializable {
     default SerializedLambda serialized() {
@@ -20,21 +17,12 @@ public interface MethodFinder extends Serializable {
     }
 
     default Class<?> getContainingClass() {
-        try {
-            String className = serialized().getImplClass().replaceAll("/", ".");
-            return Class.forName(className);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return ResolvedLambda.of(this).containingClass();
     }
 
     default Method method() {
-        SerializedLambda lambda = serialized();
-        Class<?> containingClass = getContainingClass();
-        return asList(containingClass.getDeclaredMethods())
-                .stream()
-                .filter(method -> Objects.equals(method.getName(), lambda.getImplMethodName()))
-                .findFirst()
+        return ResolvedLambda.of(this)
+                .method()
                 .orElseThrow(UnableToGuessMethodException::new);
     }
 
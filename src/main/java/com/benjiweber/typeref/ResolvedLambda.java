@@ -0,0 +1,77 @@
+package com.benjiweber.typeref;
+
+import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.util.Arrays.asList;
+
+public final class ResolvedLambda {
+    private static final boolean flightRecorder = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+    private static final ClassValue<ResolvedLambda> resolutions = new ClassValue<>() {
+        protected ResolvedLambda computeValue(Class<?> lambdaType) {
+            return new ResolvedLambda();
+        }
+    };
+
+    private volatile boolean resolved;
+    private Class<?> containingClass;
+    private Optional<Method> method;
+    private Class<?> producedType;
+
+    private ResolvedLambda() {}
+
+    public static ResolvedLambda of(MethodFinder lambda) {
+        ResolvedLambda resolution = resolutions.get(lambda.getClass());
+        if (!resolution.resolved) {
+            resolution.resolve(lambda);
+        }
+        return resolution;
+    }
+
+    public Class<?> containingClass() {
+        return containingClass;
+    }
+
+    public Optional<Method> method() {
+        return method;
+    }
+
+    public Class<?> producedType() {
+        return producedType;
+    }
+
+    private synchronized void resolve(MethodFinder lambda) {
+        if (resolved) return;
+
+        LambdaResolutionEvent event = flightRecorder ? LambdaResolutionEvent.started() : null;
+        SerializedLambda serialized = lambda.serialized();
+        try {
+            containingClass = Class.forName(
+                serialized.getImplClass().replaceAll("/", "."),
+                false,
+                classLoaderOf(lambda)
+            );
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        method = asList(containingClass.getDeclaredMethods())
+            .stream()
+            .filter(m -> Objects.equals(m.getName(), serialized.getImplMethodName()))
+            .findFirst();
+        producedType = method
+            .filter(m -> !Objects.equals(m.getName(), "<init>"))
+            .<Class<?>>map(Method::getReturnType)
+            .orElse(containingClass);
+        resolved = true;
+        if (event != null) {
+            event.completed(lambda.getClass(), producedType);
+        }
+    }
+
+    private static ClassLoader classLoaderOf(MethodFinder lambda) {
+        ClassLoader loader = lambda.getClass().getClassLoader();
+        return loader != null ? loader : ResolvedLambda.class.getClassLoader();
+    }
+}
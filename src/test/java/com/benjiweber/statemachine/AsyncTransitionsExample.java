@@ -0,0 +1,171 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.State.InvalidStateTransitionException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncTransitionsExample {
+
+    static final List<String> sent = new CopyOnWriteArrayList<>();
+    static volatile CountDownLatch mailServer = new CountDownLatch(0);
+
+    sealed interface Parcel extends State<Parcel> permits Packed, Dispatched, Delivered {}
+    static final class Packed implements Parcel, TransitionTo<Dispatched> {}
+    static final class Dispatched implements Parcel, TransitionTo<Delivered> {
+        @SideEffect
+        public void afterTransition(Parcel from) {
+            send("dispatched");
+        }
+    }
+    static final class Delivered implements Parcel {
+        @SideEffect
+        public void afterTransition(Parcel from) {
+            send("delivered");
+        }
+    }
+
+    static final List<String> signals = new CopyOnWriteArrayList<>();
+    static volatile boolean broken;
+
+    sealed interface Beacon extends State<Beacon> permits Lit, Dark {}
+    static final class Lit implements Beacon, TransitionTo<Dark> {
+        @SideEffect
+        public void afterTransition(Beacon from) {
+            if (broken) throw new AssertionError("bulb blew");
+            signals.add("lit");
+        }
+    }
+    static final class Dark implements Beacon, TransitionTo<Lit> {
+        @SideEffect
+        public void afterTransition(Beacon from) {
+            signals.add("dark");
+        }
+    }
+
+    static void send(String message) {
+        try {
+            mailServer.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        sent.add(message);
+    }
+
+    final AtomicInteger tasks = new AtomicInteger();
+    final ExecutorService pool = Executors.newCachedThreadPool();
+    final AsyncTransitions async = new AsyncTransitions(task -> {
+        tasks.incrementAndGet();
+        pool.execute(task);
+    });
+
+    @After
+    public void shutdown() {
+        sent.clear();
+        signals.clear();
+        broken = false;
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void state_is_assigned_before_side_effects_complete() throws Exception {
+        mailServer = new CountDownLatch(1);
+        AtomicState<Parcel> parcel = new AtomicState<>(new Packed());
+
+        CompletableFuture<Dispatched> dispatched = async.transition(parcel, Dispatched::new);
+
+        assertTrue(parcel.get() instanceof Dispatched);
+        assertFalse(dispatched.isDone());
+        mailServer.countDown();
+        assertTrue(dispatched.get(5, TimeUnit.SECONDS) instanceof Dispatched);
+        assertEquals(List.of("dispatched"), sent);
+    }
+
+    @Test
+    public void side_effects_run_in_order_and_are_batched_per_entity() throws Exception {
+        mailServer = new CountDownLatch(1);
+        AtomicState<Parcel> parcel = new AtomicState<>(new Packed());
+
+        CompletableFuture<Dispatched> dispatched = async.transition(parcel, Dispatched::new);
+        CompletableFuture<Delivered> delivered = async.transition(parcel, Delivered::new);
+
+        assertTrue(parcel.get() instanceof Delivered);
+        mailServer.countDown();
+        CompletableFuture.allOf(dispatched, delivered).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("dispatched", "delivered"), sent);
+        assertEquals(1, tasks.get());
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, async.pendingEntities());
+    }
+
+    @Test
+    public void invalid_transitions_fail_the_future() {
+        AtomicState<Parcel> parcel = new AtomicState<>(new Packed());
+
+        CompletableFuture<Delivered> delivered = async.transition(parcel, Delivered::new);
+
+        assertTrue(parcel.get() instanceof Packed);
+        try {
+            delivered.join();
+            fail("Expected the transition to be rejected");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof InvalidStateTransitionException);
+        }
+    }
+
+    @Test
+    public void transitions_without_side_effects_complete_immediately() {
+        AtomicState<AtomicStateExample.Switch> light = new AtomicState<>(new AtomicStateExample.Off());
+
+        CompletableFuture<AtomicStateExample.On> on = async.transition(light, AtomicStateExample.On::new);
+
+        assertTrue(on.isDone());
+        assertEquals(0, tasks.get());
+    }
+
+    @Test
+    public void concurrent_transitions_of_one_entity_run_side_effects_in_transition_order() throws Exception {
+        AtomicState<Beacon> beacon = new AtomicState<>(new Dark());
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<CompletableFuture<?>>> attempts = new ArrayList<>();
+            for (int i = 0; i < 4_000; i++) {
+                boolean light = i % 2 == 0;
+                attempts.add(callers.submit(() -> light ? async.transition(beacon, Lit::new) : async.transition(beacon, Dark::new)));
+            }
+            for (Future<CompletableFuture<?>> attempt : attempts) {
+                attempt.get(5, TimeUnit.SECONDS).handle((result, e) -> null).get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        for (int i = 0; i < signals.size(); i++) {
+            assertEquals(i % 2 == 0 ? "lit" : "dark", signals.get(i));
+        }
+        assertEquals(beacon.get() instanceof Lit, signals.size() % 2 == 1);
+    }
+
+    @Test
+    public void an_error_in_a_side_effect_fails_its_future_and_frees_the_entity() throws Exception {
+        AtomicState<Beacon> beacon = new AtomicState<>(new Dark());
+        broken = true;
+        CompletableFuture<Lit> lit = async.transition(beacon, Lit::new);
+        try {
+            lit.get(5, TimeUnit.SECONDS);
+            fail("Expected the side effect to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+
+        broken = false;
+        assertTrue(async.transition(beacon, Dark::new).get(5, TimeUnit.SECONDS) instanceof Dark);
+        assertEquals(List.of("dark"), signals);
+    }
+}
@@ -0,0 +1,113 @@
+package com.benjiweber.statemachine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AtomicStateExample {
+
+    static final AtomicInteger switchedOn = new AtomicInteger();
+
+    sealed interface Switch extends State<Switch> permits On, Off {}
+    static final class On implements Switch, TransitionTo<Off> {
+        @Override
+        public void afterTransition(Switch from) {
+            switchedOn.incrementAndGet();
+        }
+    }
+    static final class Off implements Switch, TransitionTo<On> {}
+
+    static final AtomicBoolean jammed = new AtomicBoolean();
+
+    sealed interface Latch extends State<Latch> permits Shut, Open {}
+    static final class Shut implements Latch, TransitionTo<Open> {
+        @Override
+        public void beforeTransition(Latch to) {
+            if (jammed.get()) throw new IllegalStateException("jammed");
+        }
+    }
+    static final class Open implements Latch, TransitionTo<Shut> {}
+
+    @Test
+    public void transitions_atomically() {
+        AtomicState<Switch> light = new AtomicState<>(new Off());
+        assertTrue(light.tryTransition(On::new));
+        assertTrue(light.get() instanceof On);
+        assertFalse(light.tryTransition(On::new));
+        assertTrue(light.tryTransition(Off::new));
+        assertTrue(light.get() instanceof Off);
+    }
+
+    @Test
+    public void rejects_when_state_has_moved_on() {
+        Off off = new Off();
+        AtomicState<Switch> light = new AtomicState<>(off);
+        assertTrue(light.compareAndTransition(off, On::new));
+        assertFalse(light.compareAndTransition(off, On::new));
+    }
+
+    @Test
+    public void before_transition_can_veto() {
+        AtomicState<Latch> latch = new AtomicState<>(new Shut());
+        jammed.set(true);
+        try {
+            latch.tryTransition(Open::new);
+            fail("Expected the guard to veto the transition");
+        } catch (IllegalStateException expected) {
+            assertTrue(latch.get() instanceof Shut);
+        } finally {
+            jammed.set(false);
+        }
+        assertTrue(latch.tryTransition(Open::new));
+    }
+
+    @Test
+    @SuppressWarnings("try") // the registration is only held open for the block
+    public void invalid_compare_and_transition_is_reported() {
+        List<Class<?>> rejected = new ArrayList<>();
+        Off off = new Off();
+        AtomicState<Switch> light = new AtomicState<>(off);
+        try (var registration = TransitionListeners.register(Switch.class, new TransitionListener() {
+            public void onRejected(State<?> from, Class<?> target) {
+                rejected.add(target);
+            }
+        })) {
+            assertFalse(light.compareAndTransition(off, Off::new));
+        }
+        assertEquals(List.of(Off.class), rejected);
+    }
+
+    @Test
+    public void only_one_concurrent_transition_wins() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 100; round++) {
+                AtomicState<Switch> light = new AtomicState<>(new Off());
+                int before = switchedOn.get();
+                CyclicBarrier start = new CyclicBarrier(threads);
+                List<Future<Boolean>> attempts = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    attempts.add(executor.submit(() -> {
+                        start.await();
+                        return light.tryTransition(On::new);
+                    }));
+                }
+                int winners = 0;
+                for (Future<Boolean> attempt : attempts) {
+                    winners += attempt.get() ? 1 : 0;
+                }
+                assertEquals(1, winners);
+                assertEquals(before + 1, switchedOn.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
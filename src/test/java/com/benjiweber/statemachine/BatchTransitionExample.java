@@ -0,0 +1,67 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.*;
+
+public class BatchTransitionExample {
+
+    @Test
+    public void partitions_transitioned_and_rejected_states() {
+        List<OrderStatus> orders = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            orders.add(i % 4 == 0 ? new Shipped() : new Pending());
+        }
+
+        BatchTransition.Result<OrderStatus, Refunded> result = BatchTransition.apply(orders, Refunded::new);
+
+        assertEquals(2_500, result.transitionedCount());
+        assertEquals(7_500, result.rejectedCount());
+        assertTrue(result.transitioned().stream().allMatch(order -> order instanceof Refunded));
+        assertTrue(result.rejected().stream().allMatch(order -> order instanceof Pending));
+    }
+
+    @Test
+    public void accepts_streams() {
+        var result = BatchTransition.apply(
+            List.<OrderStatus>of(new Pending(), new CheckingOut(), new Refunded()).stream(),
+            Cancelled::new
+        );
+        assertEquals(2, result.transitionedCount());
+        assertEquals(1, result.rejectedCount());
+    }
+
+    @Test
+    public void results_line_up_with_the_input() {
+        List<OrderStatus> orders = List.of(new Pending(), new Shipped(), new Refunded(), new Shipped());
+
+        var result = BatchTransition.apply(orders, Refunded::new);
+
+        assertEquals(orders.size(), result.results().size());
+        assertFalse(result.transitioned(0));
+        assertSame(orders.get(0), result.results().get(0));
+        assertTrue(result.transitioned(1));
+        assertTrue(result.results().get(1) instanceof Refunded);
+        assertFalse(result.transitioned(2));
+        assertTrue(result.transitioned(3));
+    }
+
+    @Test
+    @SuppressWarnings("try") // the registration is only held open for the block
+    public void rejections_are_reported_to_listeners() {
+        LongAdder rejections = new LongAdder();
+        try (var registration = TransitionListeners.register(OrderStatus.class, new TransitionListener() {
+            public void onRejected(State<?> from, Class<?> target) {
+                rejections.increment();
+            }
+        })) {
+            BatchTransition.apply(List.<OrderStatus>of(new Pending(), new Shipped(), new Pending()), Refunded::new);
+        }
+        assertEquals(2, rejections.sum());
+    }
+}
@@ -0,0 +1,179 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.AtomicStateExample.*;
+import com.benjiweber.statemachine.TrafficLightExample.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public class FlightRecorderExample {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void events_are_recorded_when_enabled() throws Exception {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.benjiweber.statemachine.Transition");
+            recording.enable("com.benjiweber.statemachine.Rejection");
+            recording.enable("com.benjiweber.statemachine.Guard");
+            recording.enable("com.benjiweber.statemachine.LambdaResolution");
+            recording.start();
+
+            new Off().transition(On::new);
+            new Green().transitionOrSame(Red::new);
+
+            recording.stop();
+            events = read(recording);
+        }
+
+        RecordedEvent transition = only(events, "com.benjiweber.statemachine.Transition");
+        assertEquals(Switch.class.getName(), transition.getClass("machine").getName());
+        assertEquals(Off.class.getName(), transition.getClass("from").getName());
+        assertEquals(On.class.getName(), transition.getClass("to").getName());
+
+        RecordedEvent guard = only(events, "com.benjiweber.statemachine.Guard");
+        assertEquals(On.class.getName(), guard.getClass("state").getName());
+        assertEquals("afterTransition", guard.getString("guard"));
+
+        RecordedEvent rejection = only(events, "com.benjiweber.statemachine.Rejection");
+        assertEquals(Green.class.getName(), rejection.getClass("from").getName());
+        assertEquals(Red.class.getName(), rejection.getClass("to").getName());
+
+        assertFalse(named(events, "com.benjiweber.statemachine.LambdaResolution").isEmpty());
+    }
+
+    @Test
+    public void asynchronous_transitions_are_recorded_once_side_effects_complete() throws Exception {
+        List<RecordedEvent> events;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Recording recording = new Recording()) {
+            recording.enable("com.benjiweber.statemachine.Transition");
+            recording.start();
+
+            AtomicState<AsyncTransitionsExample.Beacon> beacon = new AtomicState<>(new AsyncTransitionsExample.Dark());
+            new AsyncTransitions(executor).transition(beacon, AsyncTransitionsExample.Lit::new).get(5, TimeUnit.SECONDS);
+
+            recording.stop();
+            events = read(recording);
+        } finally {
+            executor.shutdownNow();
+            AsyncTransitionsExample.signals.clear();
+        }
+
+        RecordedEvent transition = only(events, "com.benjiweber.statemachine.Transition");
+        assertEquals(AsyncTransitionsExample.Lit.class.getName(), transition.getClass("to").getName());
+    }
+
+    @Test
+    public void resolving_the_target_is_timed_as_part_of_the_transition() throws Exception {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.benjiweber.statemachine.Transition");
+            recording.enable("com.benjiweber.statemachine.LambdaResolution");
+            recording.start();
+
+            new Green().tryTransition(SolidAmber::new).unchecked();
+
+            recording.stop();
+            events = read(recording);
+        }
+
+        RecordedEvent transition = only(events, "com.benjiweber.statemachine.Transition");
+        RecordedEvent resolution = only(events, "com.benjiweber.statemachine.LambdaResolution");
+        assertFalse(resolution.getStartTime().isBefore(transition.getStartTime()));
+        assertFalse(resolution.getEndTime().isAfter(transition.getEndTime()));
+    }
+
+    @Test
+    public void guards_that_throw_are_recorded_as_rejections() throws Exception {
+        List<RecordedEvent> events;
+        AtomicStateExample.jammed.set(true);
+        try (Recording recording = new Recording()) {
+            recording.enable("com.benjiweber.statemachine.Transition");
+            recording.enable("com.benjiweber.statemachine.Rejection");
+            recording.start();
+
+            try {
+                new Shut().transition(AtomicStateExample.Open::new);
+                fail("Expected the jammed latch to veto the transition");
+            } catch (IllegalStateException expected) {
+            }
+            try {
+                new AtomicState<Latch>(new Shut()).tryTransition(AtomicStateExample.Open::new);
+                fail("Expected the jammed latch to veto the transition");
+            } catch (IllegalStateException expected) {
+            }
+
+            recording.stop();
+            events = read(recording);
+        } finally {
+            AtomicStateExample.jammed.set(false);
+        }
+
+        assertTrue(named(events, "com.benjiweber.statemachine.Transition").isEmpty());
+        List<RecordedEvent> rejections = named(events, "com.benjiweber.statemachine.Rejection");
+        assertEquals(2, rejections.size());
+        for (RecordedEvent rejection : rejections) {
+            assertEquals(Latch.class.getName(), rejection.getClass("machine").getName());
+            assertEquals(Shut.class.getName(), rejection.getClass("from").getName());
+            assertEquals(AtomicStateExample.Open.class.getName(), rejection.getClass("to").getName());
+            assertNotNull(rejection.getStackTrace());
+        }
+    }
+
+    @Test
+    public void transitions_only_look_at_events_while_a_recording_runs() {
+        new Off().transition(On::new);
+        assertFalse(Guards.recording);
+        try (Recording recording = new Recording()) {
+            recording.start();
+            assertTrue(Guards.recording);
+            recording.stop();
+            assertFalse(Guards.recording);
+        }
+    }
+
+    @Test
+    public void events_are_disabled_by_default() throws Exception {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.start();
+            new Off().transition(On::new);
+            new Green().transitionOrSame(Red::new);
+            recording.stop();
+            events = read(recording);
+        }
+
+        assertTrue(events.stream().noneMatch(event -> event.getEventType().getName().startsWith("com.benjiweber.statemachine")));
+    }
+
+    private List<RecordedEvent> read(Recording recording) throws Exception {
+        Path file = folder.newFile("recording.jfr").toPath();
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = named(events, name);
+        assertEquals(name, 1, matching.size());
+        return matching.get(0);
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).collect(toList());
+    }
+}
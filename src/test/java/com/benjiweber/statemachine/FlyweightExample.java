@@ -0,0 +1,71 @@
+package com.benjiweber.statemachine;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FlyweightExample {
+
+    static final AtomicInteger transitions = new AtomicInteger();
+
+    @Flyweight
+    sealed interface Door extends State<Door> permits Open, Closed, Locked {
+        default void afterTransition(Door from) {
+            transitions.incrementAndGet();
+        }
+    }
+    static final class Open implements Door, TransitionTo<Closed> {}
+    static final class Closed implements Door, BiTransitionTo<Open, Locked> {}
+    static final class Locked implements Door, TransitionTo<Closed> {
+        String code = "1234";
+    }
+
+    sealed interface Valve extends State<Valve> permits Shut, Flowing {}
+    static final class Shut implements Valve, TransitionTo<Flowing> {}
+    @Flyweight
+    static final class Flowing implements Valve, TransitionTo<Shut> {
+        int litres;
+    }
+
+    @Test
+    public void stateless_states_are_shared() {
+        Open open = new Open();
+        Closed first = open.transitionShared(Closed::new);
+        Closed second = first.transitionShared(Open::new).transitionShared(Closed::new);
+        assertSame(first, second);
+
+        Door door = new Open();
+        assertSame(first, door.tryTransition(Closed.class).unchecked());
+        assertSame(first, door.tryTransition("Closed").unchecked());
+    }
+
+    @Test
+    public void guards_still_run_for_shared_states() {
+        int before = transitions.get();
+        new Open()
+            .transitionShared(Closed::new)
+            .transitionShared(Open::new)
+            .transitionShared(Closed::new);
+        assertEquals(before + 3, transitions.get());
+    }
+
+    @Test
+    public void states_with_fields_are_not_shared() {
+        Closed closed = new Closed();
+        assertNotSame(closed.transitionShared(Locked::new), closed.transitionShared(Locked::new));
+    }
+
+    @Test
+    public void plain_transitions_always_call_the_constructor() {
+        Open open = new Open();
+        assertNotSame(open.transition(Closed::new), open.transition(Closed::new));
+        assertNotSame(open.tryTransition(Closed::new).unchecked(), open.tryTransition(Closed::new).unchecked());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void stateful_states_cannot_be_flyweights() {
+        new Shut().transitionShared(Flowing::new);
+    }
+}
@@ -0,0 +1,82 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import com.benjiweber.statemachine.TrafficLightExample.*;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class GeneratedStateMachineExample {
+
+    @Test
+    public void metadata_is_generated_at_compile_time() {
+        assertTrue(StateMachineDescriptor.of(OrderStatus.class).isGenerated());
+        assertTrue(StateMachineDescriptor.of(TrafficLight.class).isGenerated());
+        assertFalse(StateMachineDescriptor.reflective(OrderStatus.class).isGenerated());
+    }
+
+    @Test
+    public void generated_metadata_matches_reflection() {
+        var generated = StateMachineDescriptor.of(OrderStatus.class);
+        var reflective = StateMachineDescriptor.reflective(OrderStatus.class);
+
+        assertEquals(reflective.valuesList(), generated.valuesList());
+        for (int ordinal = 0; ordinal < reflective.size(); ordinal++) {
+            assertEquals(reflective.name(ordinal), generated.name(ordinal));
+        }
+        assertEquals(asList(CheckingOut.class, Cancelled.class), generated.transitions(0).orElseThrow());
+        assertEquals(asList(Shipped.class, Failed.class), generated.transitions(2).orElseThrow());
+    }
+
+    @Test
+    public void generated_factories_for_static_states() {
+        var descriptor = StateMachineDescriptor.of(OrderStatus.class);
+        assertTrue(descriptor.factory(0).orElseThrow().get() instanceof Pending);
+        assertFalse(descriptor.factory(descriptor.ordinal(Failed.class)).isPresent());
+    }
+
+    @Test
+    public void stale_metadata_falls_back_to_reflection() {
+        GeneratedStateMachine<TrafficLight> stale = new GeneratedStateMachine<>() {
+            public Class<TrafficLight> type() { return TrafficLight.class; }
+            public List<Class<? extends TrafficLight>> states() { return List.of(Red.class, Green.class, SolidAmber.class, FlashingAmber.class); }
+            public List<String> names() { return List.of("Red", "Green", "SolidAmber", "FlashingAmber"); }
+            public List<List<Class<?>>> transitions() { return List.of(); }
+            public Supplier<? extends TrafficLight> factory(int ordinal) { return null; }
+        };
+
+        var descriptor = StateMachineDescriptor.withCompanion(TrafficLight.class, stale);
+
+        assertFalse(descriptor.isGenerated());
+        assertEquals(StateMachineDescriptor.of(TrafficLight.class).valuesList(), descriptor.valuesList());
+    }
+
+    @Test
+    public void metadata_with_stale_transitions_falls_back_to_reflection() {
+        GeneratedStateMachine<TrafficLight> stale = new GeneratedStateMachine<>() {
+            public Class<TrafficLight> type() { return TrafficLight.class; }
+            public List<Class<? extends TrafficLight>> states() { return List.of(Green.class, SolidAmber.class, FlashingAmber.class, Red.class); }
+            public List<String> names() { return List.of("Green", "SolidAmber", "FlashingAmber", "Red"); }
+            public List<List<Class<?>>> transitions() { return List.of(List.of(SolidAmber.class), List.of(Red.class), List.of(Green.class), List.of(Green.class)); }
+            public Supplier<? extends TrafficLight> factory(int ordinal) { return null; }
+        };
+
+        assertFalse(StateMachineDescriptor.withCompanion(TrafficLight.class, stale).isGenerated());
+    }
+
+    @Test
+    public void companion_names_do_not_collide() {
+        assertNotEquals(
+            GeneratedStateMachine.companionSimpleName("A$B_C"),
+            GeneratedStateMachine.companionSimpleName("A_B$C")
+        );
+        assertEquals(
+            "StateMachineExample__OrderStatus_StateMachine",
+            GeneratedStateMachine.companionSimpleName("StateMachineExample$OrderStatus")
+        );
+    }
+}
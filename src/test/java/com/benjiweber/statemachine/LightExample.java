@@ -2,7 +2,9 @@ package com.benjiweber.statemachine;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class LightExample {
 
@@ -25,4 +27,22 @@ public class LightExample {
         lightSwitch.tryTransition(Off::new).ignoreIfInvalid();
         assertTrue(lightSwitch instanceof Off);
     }
+
+    @Test
+    public void class_based_states_are_enumerable() {
+        assertEquals(Switch.class, lightSwitch.domainType());
+        assertEquals(1, new Off().ordinal());
+        assertEquals(On.class, lightSwitch.valueOf("On"));
+    }
+
+    @Test
+    public void inner_class_states_need_their_enclosing_instance() {
+        try {
+            lightSwitch.tryTransition("On").unchecked();
+            fail("On needs an enclosing LightExample");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("outer.new On()"));
+        }
+        assertTrue(lightSwitch instanceof Off);
+    }
 }
@@ -0,0 +1,156 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.verify;
+
+public class PartitionedTransitionsExample {
+
+    @Test
+    public void transitions_are_serialised_per_entity() throws Exception {
+        int entities = 1_000;
+        int threads = 8;
+        PartitionedTransitions<OrderStatus> orders = PartitionedTransitions.builder(OrderStatus.class)
+            .partitions(4)
+            .queueCapacity(64)
+            .build();
+        try {
+            for (long id = 0; id < entities; id++) {
+                orders.put(id, Pending.class);
+            }
+            ExecutorService callers = Executors.newFixedThreadPool(threads);
+            List<Future<Integer>> wins = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                wins.add(callers.submit(() -> {
+                    List<CompletableFuture<Boolean>> results = new ArrayList<>();
+                    for (long id = 0; id < entities; id++) {
+                        results.add(orders.submit(id, CheckingOut::new));
+                    }
+                    int won = 0;
+                    for (CompletableFuture<Boolean> result : results) {
+                        won += result.get() ? 1 : 0;
+                    }
+                    return won;
+                }));
+            }
+            int won = 0;
+            for (Future<Integer> w : wins) {
+                won += w.get(30, TimeUnit.SECONDS);
+            }
+            callers.shutdown();
+
+            assertEquals(entities, won);
+            assertEquals(CheckingOut.class, orders.type(42).get());
+        } finally {
+            orders.close();
+        }
+    }
+
+    @Test
+    public void full_mailboxes_push_back() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        PartitionedTransitions<OrderStatus> orders = PartitionedTransitions.builder(OrderStatus.class)
+            .partitions(1)
+            .queueCapacity(2)
+            .threadFactory(runnable -> new Thread(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                runnable.run();
+            }))
+            .build();
+        try {
+            orders.put(1, Pending.class);
+            CompletableFuture<Boolean> checkedOut = orders.offer(1, CheckingOut::new);
+            CompletableFuture<Boolean> shipped = orders.offer(1, Shipped::new);
+
+            assertTrue(shipped.isCompletedExceptionally());
+            blocked.countDown();
+            assertTrue(checkedOut.get(5, TimeUnit.SECONDS));
+        } finally {
+            blocked.countDown();
+            orders.close();
+        }
+    }
+
+    @Test
+    public void entities_keep_their_own_state_instances() throws Exception {
+        StateMachineExample machine = TimedTransitionsExample.machine();
+        Purchased purchased = new Purchased();
+        try (PartitionedTransitions<OrderStatus> orders = PartitionedTransitions.builder(OrderStatus.class).partitions(2).build()) {
+            orders.put(1, purchased);
+            assertSame(purchased, orders.get(1).get());
+
+            assertTrue(orders.submit(1, () -> machine.new Failed()).get());
+            assertEquals(Failed.class, orders.type(1).get());
+            verify(machine.failureLog).warning("Oh bother! failed from Purchased");
+            assertFalse(orders.submit(1, Shipped::new).get());
+            assertFalse(orders.submit(2, Shipped::new).get());
+        }
+    }
+
+    @Test
+    public void work_submitted_while_closing_is_applied_or_rejected() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            PartitionedTransitions<OrderStatus> orders = PartitionedTransitions.builder(OrderStatus.class)
+                .partitions(2)
+                .queueCapacity(4)
+                .batchSize(2)
+                .build();
+            ExecutorService callers = Executors.newFixedThreadPool(4);
+            List<Future<List<CompletableFuture<Boolean>>>> submitted = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                submitted.add(callers.submit(() -> {
+                    List<CompletableFuture<Boolean>> results = new ArrayList<>();
+                    try {
+                        for (long id = 0; id < 1_000; id++) {
+                            results.add(orders.submit(id, CheckingOut::new));
+                        }
+                    } catch (IllegalStateException closed) {
+                    }
+                    return results;
+                }));
+            }
+            orders.close();
+            callers.shutdown();
+
+            for (Future<List<CompletableFuture<Boolean>>> results : submitted) {
+                for (CompletableFuture<Boolean> result : results.get(10, TimeUnit.SECONDS)) {
+                    try {
+                        result.get(10, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        assertTrue(e.getCause() instanceof IllegalStateException);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("try") // only the partition threads started by build() are used
+    public void partition_threads_are_named_daemons_by_default() throws Exception {
+        try (PartitionedTransitions<OrderStatus> orders = PartitionedTransitions.builder(OrderStatus.class).partitions(1).build()) {
+            Thread partition = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("statemachine-partition-0"))
+                .findFirst()
+                .orElseThrow();
+
+            assertTrue(partition.isDaemon());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closed_executors_reject_work() throws Exception {
+        PartitionedTransitions<OrderStatus> orders = PartitionedTransitions.builder(OrderStatus.class).partitions(1).build();
+        orders.close();
+        orders.submit(1, CheckingOut::new);
+    }
+}
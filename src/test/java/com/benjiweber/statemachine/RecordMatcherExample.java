@@ -0,0 +1,90 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.RegexExample.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.benjiweber.statemachine.RegexExample.compiled;
+import static org.junit.Assert.*;
+
+public class RecordMatcherExample {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    final StateLongMap<APlusB> expected = StateLongMap.of(APlusB.class);
+    final List<Long> expectedOffsets = new ArrayList<>();
+
+    Path logFile(int records) throws Exception {
+        String[] samples = {"AB", "AAAAB", "ABA", "", "C", "AAAA", "BA", "AAAAAAAAAAAAAAAAAAAAAAB"};
+        Random random = new Random(42);
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            String line = samples[random.nextInt(samples.length)];
+            expected.increment(compiled.matchType(line));
+            if (compiled.match(line) instanceof B) {
+                expectedOffsets.add((long) file.length());
+            }
+            file.append(line).append('\n');
+        }
+        Path path = folder.newFile().toPath();
+        Files.write(path, file.toString().getBytes(StandardCharsets.US_ASCII));
+        return path;
+    }
+
+    @Test
+    public void counts_records_by_final_state() throws Exception {
+        Path file = logFile(100_000);
+
+        StateLongMap<APlusB> counts = compiled.records().count(file);
+
+        assertEquals(expected.toString(), counts.toString());
+        assertEquals(100_000, counts.sum());
+    }
+
+    @Test
+    public void finds_offsets_of_matching_records() throws Exception {
+        Path file = logFile(10_000);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        long[] offsets;
+        try {
+            offsets = compiled.records().offsets(file, B.class, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(expectedOffsets.size(), offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals((long) expectedOffsets.get(i), offsets[i]);
+        }
+    }
+
+    @Test
+    public void records_never_straddle_mapped_chunks() throws Exception {
+        Path file = logFile(5_000);
+
+        RecordMatcher<APlusB> smallChunks = new RecordMatcher<>(compiled, (byte) '\n', 64);
+
+        assertEquals(expected.toString(), smallChunks.count(file).toString());
+        assertEquals(expectedOffsets.size(), smallChunks.offsets(file, B.class).length);
+    }
+
+    @Test
+    public void last_record_needs_no_delimiter() throws Exception {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "AAB\nC\nAB".getBytes(StandardCharsets.US_ASCII));
+
+        assertArrayEquals(new long[] {0, 6}, compiled.records().offsets(file, B.class));
+        assertEquals(1, compiled.records().count(file).get(NoMatch.class));
+    }
+}
@@ -2,15 +2,23 @@ package com.benjiweber.statemachine;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 import java.util.stream.Stream;
 
 import static com.benjiweber.statemachine.RegexExample.APlusB.match;
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class RegexExample {
 
+    @Flyweight
     sealed interface APlusB extends State<APlusB> permits Start, A, B, NoMatch {
         static APlusB match(String s) {
             return new Start().match(s);
@@ -18,23 +26,23 @@ public class RegexExample {
     };
     static final class Start implements APlusB, BiTransitionTo<A,NoMatch> {
         public APlusB match(String s) {
-            if (s.length() < 1) return transition(NoMatch::new);
-            if (s.charAt(0) == 'A') return transition(A::new).match(s.substring(1));
-            return transition(NoMatch::new).match(s.substring(1));
+            if (s.length() < 1) return transitionShared(NoMatch::new);
+            if (s.charAt(0) == 'A') return transitionShared(A::new).match(s.substring(1));
+            return transitionShared(NoMatch::new).match(s.substring(1));
         }
     }
     static final class A implements APlusB, TriTransitionTo<A,B,NoMatch> {
         public APlusB match(String s) {
-            if (s.length() < 1) return transition(NoMatch::new);
-            if (s.charAt(0) == 'A') return transition(A::new).match(s.substring(1));
-            if (s.charAt(0) == 'B') return transition(B::new).match(s.substring(1));
-            return transition(NoMatch::new);
+            if (s.length() < 1) return transitionShared(NoMatch::new);
+            if (s.charAt(0) == 'A') return transitionShared(A::new).match(s.substring(1));
+            if (s.charAt(0) == 'B') return transitionShared(B::new).match(s.substring(1));
+            return transitionShared(NoMatch::new);
         }
     }
     static final class B implements APlusB, Match, TransitionTo<NoMatch> {
         public APlusB match(String s) {
             if (s.length() < 1) return this;
-            return transition(NoMatch::new);
+            return transitionShared(NoMatch::new);
         }
     }
     static final class NoMatch implements APlusB {
@@ -44,6 +52,36 @@ public class RegexExample {
     }
     interface Match {}
 
+    sealed interface Parity extends State<Parity> permits Even, Odd, EvenAgain, OddAgain, Accept, Reject {}
+    static final class Even implements Parity, BiTransitionTo<Odd, Accept> {}
+    static final class Odd implements Parity, BiTransitionTo<EvenAgain, Reject> {}
+    static final class EvenAgain implements Parity, BiTransitionTo<OddAgain, Accept> {}
+    static final class OddAgain implements Parity, BiTransitionTo<Even, Reject> {}
+    static final class Accept implements Parity {}
+    static final class Reject implements Parity {}
+
+    static Dfa.Builder<Parity> evenNumberOfAs() {
+        return Dfa.builder(Parity.class)
+            .start(Even.class)
+            .on(Even.class, c -> c == 'A' ? Odd.class : Even.class)
+            .on(Odd.class, c -> c == 'A' ? EvenAgain.class : Odd.class)
+            .on(EvenAgain.class, c -> c == 'A' ? OddAgain.class : EvenAgain.class)
+            .on(OddAgain.class, c -> c == 'A' ? Even.class : OddAgain.class)
+            .atEnd(Even.class, Accept.class)
+            .atEnd(Odd.class, Reject.class)
+            .atEnd(EvenAgain.class, Accept.class)
+            .atEnd(OddAgain.class, Reject.class);
+    }
+
+    static final Dfa<APlusB> compiled = Dfa.builder(APlusB.class)
+        .start(Start.class)
+        .on(Start.class, c -> c == 'A' ? A.class : NoMatch.class)
+        .on(A.class, c -> c == 'A' ? A.class : c == 'B' ? B.class : NoMatch.class)
+        .on(B.class, c -> NoMatch.class)
+        .atEnd(Start.class, NoMatch.class)
+        .atEnd(A.class, NoMatch.class)
+        .build();
+
     @Test
     public void regex_match() {
         APlusB match = APlusB.match("AAAAAB");
@@ -79,4 +117,92 @@ public class RegexExample {
         assertFalse(match instanceof NoMatch);
     }
 
+    @Test
+    public void compiled_regex_matches_like_the_recursive_one() {
+        for (String input : asList("", "A", "B", "AB", "AAAAAB", "AAACAAB", "AAAAABB", "BA")) {
+            assertEquals(input, APlusB.match(input).getClass(), compiled.matchType(input));
+        }
+        assertTrue(compiled.match("AAAAAB") instanceof Match);
+        assertTrue(compiled.match("AAAAAB".toCharArray()) instanceof Match);
+        assertTrue(compiled.match("AAAAAB".getBytes(StandardCharsets.US_ASCII)) instanceof Match);
+        assertTrue(compiled.match("AAACAAB") instanceof NoMatch);
+    }
+
+    @Test
+    public void compiled_regex_handles_long_input() {
+        String input = "A".repeat(1_000_000) + "B";
+        assertTrue(compiled.match(input) instanceof Match);
+        assertTrue(compiled.match(input + "B") instanceof NoMatch);
+    }
+
+    @Test
+    public void minimized_regex_matches_the_same() {
+        Dfa<APlusB> minimized = Dfa.builder(APlusB.class)
+            .start(Start.class)
+            .on(Start.class, c -> c == 'A' ? A.class : NoMatch.class)
+            .on(A.class, c -> c == 'A' ? A.class : c == 'B' ? B.class : NoMatch.class)
+            .on(B.class, c -> NoMatch.class)
+            .atEnd(Start.class, NoMatch.class)
+            .atEnd(A.class, NoMatch.class)
+            .minimize()
+            .build();
+        assertTrue(minimized.states() <= compiled.states());
+        for (String input : asList("", "A", "AB", "AAAAAB", "AAACAAB", "AAAAABB")) {
+            assertEquals(input, compiled.matchType(input), minimized.matchType(input));
+        }
+    }
+
+    @Test
+    public void minimization_merges_equivalent_states() {
+        Dfa<Parity> full = evenNumberOfAs().build();
+        Dfa<Parity> minimized = evenNumberOfAs().minimize().build();
+        assertEquals(4, full.states());
+        assertEquals(2, minimized.states());
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1_000; i++) {
+            char[] input = new char[random.nextInt(20)];
+            for (int j = 0; j < input.length; j++) {
+                input[j] = "ABC".charAt(random.nextInt(3));
+            }
+            String corpus = new String(input);
+            Class<?> expected = corpus.chars().filter(c -> c == 'A').count() % 2 == 0 ? Accept.class : Reject.class;
+            assertEquals(corpus, expected, full.matchType(corpus));
+            assertEquals(corpus, expected, minimized.matchType(corpus));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void classifiers_must_name_a_state() {
+        Dfa.builder(APlusB.class)
+            .start(Start.class)
+            .on(Start.class, c -> c == 'A' ? A.class : null)
+            .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compiled_regex_must_follow_valid_transitions() {
+        Dfa.builder(APlusB.class)
+            .start(Start.class)
+            .on(Start.class, c -> B.class)
+            .build();
+    }
+
+    @Test
+    public void streaming_regex_keeps_state_between_chunks() {
+        StreamingMatcher<APlusB> matcher = compiled.matcher();
+        matcher.feed("AAA");
+        assertFalse(matcher.accepts(Match.class));
+        matcher.feed(CharBuffer.wrap("AAB"));
+        assertTrue(matcher.accepts(Match.class));
+        matcher.feed(ByteBuffer.wrap(new byte[] {'B'}));
+        assertTrue(matcher.result() instanceof NoMatch);
+        assertEquals(7, matcher.consumed());
+    }
+
+    @Test
+    public void streaming_regex_from_input_stream() throws IOException {
+        byte[] input = ("A".repeat(100_000) + "B").getBytes(StandardCharsets.US_ASCII);
+        assertTrue(compiled.matcher().feed(new ByteArrayInputStream(input)).result() instanceof Match);
+    }
 }
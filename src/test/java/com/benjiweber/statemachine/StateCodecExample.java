@@ -0,0 +1,107 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import com.benjiweber.statemachine.TrafficLightExample.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class StateCodecExample {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    StateCodec<TrafficLight> codec = StateCodec.of(TrafficLight.class);
+
+    @Test
+    public void round_trips_a_state_as_one_byte() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        codec.encode(new Red(), buffer);
+        assertEquals(1, buffer.position());
+
+        buffer.flip();
+        assertTrue(codec.decode(buffer, type -> NextState.of(type).get()) instanceof Red);
+    }
+
+    @Test
+    public void round_trips_arrays_of_states() {
+        TrafficLight[] lights = new TrafficLight[10_000];
+        for (int i = 0; i < lights.length; i++) {
+            lights[i] = i % 3 == 0 ? new Green() : new FlashingAmber();
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(20_000);
+        codec.writeHeader(buffer);
+        codec.encodeAll(lights, buffer);
+
+        buffer.flip();
+        TrafficLight[] restored = new TrafficLight[lights.length];
+        codec.readHeader(buffer);
+        assertEquals(lights.length, codec.decodeAll(buffer, restored, type -> NextState.of(type).get()));
+        for (int i = 0; i < lights.length; i++) {
+            assertEquals(lights[i].getClass(), restored[i].getClass());
+        }
+    }
+
+    @Test
+    public void round_trips_ordinals() {
+        byte[] ordinals = {0, 3, 2, 1, 1};
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        codec.encodeOrdinals(ordinals, 0, ordinals.length, buffer);
+
+        buffer.flip();
+        byte[] restored = new byte[ordinals.length];
+        codec.decodeOrdinals(buffer, restored);
+        assertArrayEquals(ordinals, restored);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void detects_snapshots_of_another_machine() {
+        assertNotEquals(codec.fingerprint(), StateCodec.of(OrderStatus.class).fingerprint());
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        StateCodec.of(OrderStatus.class).writeHeader(buffer);
+        buffer.flip();
+        codec.readHeader(buffer);
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"}) // the machines are compiled at runtime, so they have no static type
+    public void detects_snapshots_written_before_permits_were_reordered() throws Exception {
+        Class before = compileLight("permits Red, Green");
+        Class after = compileLight("permits Green, Red");
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        StateCodec.of(before).writeHeader(buffer);
+        StateCodec.of(before).encode((State) NextState.of(before.getPermittedSubclasses()[0]).get(), buffer);
+        buffer.flip();
+
+        assertNotEquals(StateCodec.of(before).fingerprint(), StateCodec.of(after).fingerprint());
+        try {
+            StateCodec.of(after).readHeader(buffer);
+            fail("Expected the reordered machine to reject the snapshot");
+        } catch (IllegalStateException expected) {
+            assertEquals("Green", StateCodec.of(after).decodeType(buffer).getSimpleName());
+        }
+    }
+
+    private Class<?> compileLight(String permits) throws Exception {
+        Path directory = folder.newFolder().toPath();
+        Path source = directory.resolve("Light.java");
+        Files.writeString(source, String.join("\n",
+            "public sealed interface Light extends com.benjiweber.statemachine.State<Light> " + permits + " {}",
+            "final class Red implements Light {}",
+            "final class Green implements Light {}"));
+        String classpath = Paths.get(State.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        int status = ToolProvider.getSystemJavaCompiler()
+            .run(null, null, null, "-proc:none", "-cp", classpath, "-d", directory.toString(), source.toString());
+        assertEquals(0, status);
+        return new URLClassLoader(new URL[] {directory.toUri().toURL()}, getClass().getClassLoader()).loadClass("Light");
+    }
+}
@@ -0,0 +1,52 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import com.benjiweber.statemachine.TrafficLightExample.*;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class StateGraphExample {
+
+    StateGraph<OrderStatus> orders = StateGraph.of(OrderStatus.class);
+
+    @Test
+    public void eventual_reachability() {
+        assertTrue(orders.canEventuallyReach(Pending.class, Refunded.class));
+        assertTrue(orders.canEventuallyReach(new Shipped(), Refunded.class));
+        assertTrue(orders.canEventuallyReach(Shipped.class, Shipped.class));
+        assertFalse(orders.canEventuallyReach(Shipped.class, Pending.class));
+        assertFalse(orders.canEventuallyReach(Cancelled.class, Refunded.class));
+    }
+
+    @Test
+    public void shortest_path() {
+        assertEquals(
+            Optional.of(List.of(Pending.class, CheckingOut.class, Purchased.class, Shipped.class)),
+            orders.shortestPath(Pending.class, Shipped.class));
+        assertEquals(Optional.of(List.of(Pending.class, Cancelled.class)), orders.shortestPath(Pending.class, Cancelled.class));
+        assertEquals(Optional.empty(), orders.shortestPath(Refunded.class, Pending.class));
+    }
+
+    @Test
+    public void terminal_and_unreachable_states() {
+        assertEquals(Set.of(Cancelled.class, Failed.class, Refunded.class), orders.terminalStates());
+        assertTrue(orders.isTerminal(Refunded.class));
+        assertFalse(orders.isTerminal(Shipped.class));
+        assertEquals(Set.of(Pending.class, CheckingOut.class, Purchased.class, Cancelled.class, Failed.class),
+            orders.unreachableFrom(Shipped.class));
+        assertEquals(Set.of(Shipped.class, Refunded.class), orders.reachableFrom(Shipped.class));
+    }
+
+    @Test
+    public void cycles_have_no_terminal_states() {
+        StateGraph<TrafficLight> lights = StateGraph.of(TrafficLight.class);
+        assertTrue(lights.terminalStates().isEmpty());
+        assertTrue(lights.canEventuallyReach(Red.class, SolidAmber.class));
+        assertEquals(4, lights.shortestPath(Red.class, SolidAmber.class).get().size());
+    }
+}
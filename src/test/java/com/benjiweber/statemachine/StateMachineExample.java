@@ -83,6 +83,43 @@ public class StateMachineExample {
         assertTrue(wasPending.get());
     }
 
+    @Test
+    public void we_can_dispatch_on_state_type() {
+        Dispatcher<OrderStatus, String> describe = State.<OrderStatus, String>matcher(OrderStatus.class)
+            .when(Pending::new, pending -> "waiting")
+            .when(CheckingOut::new, checkingOut -> "paying")
+            .when(Purchased::new, purchased -> "paid")
+            .when(Shipped::new, shipped -> "on its way")
+            .when(Cancelled::new, cancelled -> "cancelled")
+            .when(Failed.class, failed -> "failed")
+            .when(Refunded::new, refunded -> "refunded")
+            .build();
+
+        assertEquals("waiting", describe.apply(new Pending()));
+        assertEquals("on its way", describe.apply(new Shipped()));
+        assertEquals("failed", describe.apply(new Failed()));
+    }
+
+    @Test
+    public void dispatchers_must_be_exhaustive() {
+        try {
+            State.<OrderStatus, String>matcher(OrderStatus.class)
+                .when(Pending::new, pending -> "waiting")
+                .build();
+            fail("Expected missing states to be reported");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("CheckingOut"));
+            assertFalse(e.getMessage().contains("Pending"));
+        }
+
+        Dispatcher<OrderStatus, Boolean> isFinished = State.<OrderStatus, Boolean>matcher(OrderStatus.class)
+            .when(Refunded::new, refunded -> true)
+            .when(Cancelled::new, cancelled -> true)
+            .orElse(state -> false);
+        assertTrue(isFinished.apply(new Refunded()));
+        assertFalse(isFinished.apply(new Pending()));
+    }
+
     @Test
     public void runtime_checked_transition() {
         OrderStatus state = new Pending();
@@ -93,6 +130,23 @@ public class StateMachineExample {
         assertTrue(state instanceof CheckingOut);
     }
 
+    @Test
+    public void runtime_transition_by_class_name_or_ordinal() {
+        OrderStatus state = new Pending();
+        state = state.tryTransition("CheckingOut").unchecked();
+        assertTrue(state instanceof CheckingOut);
+        state = state.tryTransition(Purchased.class).unchecked();
+        assertTrue(state instanceof Purchased);
+        state = state.tryTransition(State.ordinal(OrderStatus.class, Shipped.class)).unchecked();
+        assertTrue(state instanceof Shipped);
+        assertTrue(state.tryTransition("Pending").ignoreIfInvalid() instanceof Shipped);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void runtime_transition_to_unknown_state() {
+        new Pending().tryTransition("Lost");
+    }
+
     @Test
     public void runtime_checked_transition_ignoring_failure() {
         OrderStatus state = new Pending();
@@ -104,6 +158,20 @@ public class StateMachineExample {
         assertTrue(state instanceof Pending);
     }
 
+    @Test
+    public void runtime_checked_transition_or_same() {
+        OrderStatus state = new Pending();
+        state = state.transitionOrSame(Refunded::new);
+        assertTrue(state instanceof Pending);
+        state = state.transitionOrSame(CheckingOut::new);
+        assertTrue(state instanceof CheckingOut);
+    }
+
+    @Test
+    public void invalid_transitions_are_stackless_by_default() {
+        assertEquals(0, new InvalidStateTransitionException().getStackTrace().length);
+    }
+
     @Test(expected = InvalidStateTransitionException.class)
     public void runtime_checked_transition_throwing_when_invalid() {
         OrderStatus state = new Pending();
@@ -165,6 +233,21 @@ public class StateMachineExample {
                 pending.validTransitionTypes()
         );
     }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void valid_transitions_are_immutable() {
+        new Pending().validTransitionTypes().add(Refunded.class);
+    }
+
+    @Test
+    public void checking_transitions_at_runtime() {
+        OrderStatus pending = new Pending();
+        assertTrue(pending.canTransitionTo(CheckingOut::new));
+        assertTrue(pending.canTransitionTo(Cancelled::new));
+        assertFalse(pending.canTransitionTo(Refunded::new));
+        assertFalse(pending.canTransitionTo(Pending::new));
+    }
+
     static class NotSealed implements State<NotSealed> {}
     @Test(expected = IllegalArgumentException.class)
     public void non_sealed_type_not_enumerable() {
@@ -185,6 +268,11 @@ public class StateMachineExample {
         );
     }
 
+    @Test(expected = UnsupportedOperationException.class)
+    public void enumerable_set_is_immutable() {
+        State.valuesSet(OrderStatus.class).clear();
+    }
+
     @Test public void enumerable_array() {
         assertArrayEquals(
             array(Pending.class, CheckingOut.class, Purchased.class, Shipped.class, Cancelled.class, Failed.class, Refunded.class),
@@ -225,6 +313,11 @@ public class StateMachineExample {
         assertEquals(0, new Pending().ordinal());
         assertEquals(3, new Shipped().ordinal());
     }
+    @Test public void domain_type() {
+        assertEquals(OrderStatus.class, new Refunded().domainType());
+        assertEquals(OrderStatus.class, new Failed().domainType());
+    }
+
     @Test
     public void name() {
         assertEquals("Pending", new Pending().name());
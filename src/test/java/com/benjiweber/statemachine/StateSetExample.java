@@ -0,0 +1,78 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class StateSetExample {
+
+    @Test
+    public void state_sets() {
+        StateSet<OrderStatus> finished = StateSet.of(OrderStatus.class, Cancelled.class, Refunded.class);
+
+        assertTrue(finished.contains(Refunded.class));
+        assertTrue(finished.contains(new Cancelled()));
+        assertFalse(finished.contains(new Pending()));
+        assertFalse(finished.contains("Refunded"));
+        assertEquals(Set.of(Cancelled.class, Refunded.class), finished);
+        assertEquals(List.of(Pending.class, CheckingOut.class, Purchased.class, Shipped.class, Failed.class),
+            List.copyOf(finished.complement()));
+        assertEquals(StateSet.allOf(OrderStatus.class).size(), finished.size() + finished.complement().size());
+
+        StateSet<OrderStatus> open = finished.complement();
+        open.retainAll(StateSet.of(OrderStatus.class, Pending.class, Refunded.class));
+        assertEquals(Set.of(Pending.class), open);
+        assertTrue(open.remove(new Pending()));
+        assertTrue(open.isEmpty());
+    }
+
+    @Test
+    public void ordinals_outside_the_machine_are_not_contained() {
+        StateSet<OrderStatus> all = StateSet.allOf(OrderStatus.class);
+
+        assertFalse(all.contains(-1));
+        assertFalse(all.contains(all.size()));
+        assertFalse(all.contains(Long.SIZE));
+        assertFalse(all.contains(Long.SIZE + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    @SuppressWarnings({"unchecked", "rawtypes"}) // smuggles in a state of another machine
+    public void state_sets_reject_foreign_states() {
+        StateSet.noneOf(OrderStatus.class).add((Class) TrafficLightExample.Red.class);
+    }
+
+    @Test
+    public void state_maps() {
+        StateMap<OrderStatus, String> messages = StateMap.of(OrderStatus.class);
+        messages.put(Shipped.class, "Your order is on its way");
+        messages.put(Cancelled.class, "Your order has been cancelled");
+
+        assertEquals("Your order is on its way", messages.get(new Shipped()));
+        assertEquals("Your order has been cancelled", messages.get(Cancelled.class));
+        assertNull(messages.get(new Pending()));
+        assertEquals(Map.of(Shipped.class, "Your order is on its way", Cancelled.class, "Your order has been cancelled"), messages);
+        assertEquals("Your order is on its way", messages.remove(Shipped.class));
+        assertEquals(1, messages.size());
+    }
+
+    @Test
+    public void primitive_state_maps() {
+        StateIntMap<OrderStatus> counts = StateIntMap.of(OrderStatus.class);
+        counts.increment(new Pending());
+        counts.increment(Pending.class);
+        counts.add(Shipped.class, 5);
+        assertEquals(2, counts.get(Pending.class));
+        assertEquals(7, counts.sum());
+
+        StateLongMap<OrderStatus> totals = StateLongMap.of(OrderStatus.class);
+        totals.add(new Refunded(), 10_000_000_000L);
+        assertEquals(10_000_000_000L, totals.get(Refunded.class));
+        assertTrue(totals.toString().contains("Refunded=10000000000"));
+    }
+}
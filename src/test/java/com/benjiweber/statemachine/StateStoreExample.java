@@ -0,0 +1,122 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.AtomicStateExample.*;
+import com.benjiweber.statemachine.RegexExample.*;
+import com.benjiweber.statemachine.StateMachineExample.*;
+import com.benjiweber.statemachine.TrafficLightExample.*;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class StateStoreExample {
+
+    sealed interface Valve extends State<Valve> permits Open, Shut {}
+    static non-sealed class Open implements Valve, BiTransitionTo<Shut, Stuck> {}
+    static final class Shut implements Valve {}
+    static final class Stuck extends Open {}
+
+    @Test
+    public void stores_states_by_entity_id() {
+        StateStore<TrafficLight> lights = new StateStore<>(TrafficLight.class);
+        lights.put(1, new Green());
+        lights.put(5_000_000_000L, Red.class);
+
+        assertEquals(Green.class, lights.type(1));
+        assertEquals(Red.class, lights.type(5_000_000_000L));
+        assertNull(lights.type(2));
+        assertEquals(2, lights.size());
+    }
+
+    @Test
+    public void transitions_by_entity_id() {
+        StateStore<TrafficLight> lights = new StateStore<>(TrafficLight.class);
+        lights.put(7, new Green());
+
+        assertFalse(lights.tryTransition(7, Red::new));
+        assertTrue(lights.tryTransition(7, SolidAmber::new));
+        assertEquals(SolidAmber.class, lights.type(7));
+        assertFalse(lights.tryTransition(8, SolidAmber::new));
+    }
+
+    @Test
+    public void targets_outside_the_machine_are_rejected() {
+        StateStore<Valve> valves = new StateStore<>(Valve.class);
+        valves.put(1, Open.class);
+
+        assertFalse(valves.tryTransition(1, Stuck::new));
+        assertEquals(Open.class, valves.type(1));
+        assertEquals(1, valves.size());
+    }
+
+    @Test
+    public void runs_guards_when_states_define_them() {
+        StateStore<Switch> switches = new StateStore<>(Switch.class);
+        switches.put(1, new Off());
+        int before = AtomicStateExample.switchedOn.get();
+
+        assertTrue(switches.tryTransition(1, On::new));
+
+        assertEquals(before + 1, AtomicStateExample.switchedOn.get());
+    }
+
+    @Test
+    public void iterates_and_counts() {
+        StateStore<TrafficLight> lights = new StateStore<>(TrafficLight.class);
+        for (long id = 0; id < 200_000; id++) {
+            lights.put(id, id % 2 == 0 ? Green.class : Red.class);
+        }
+        AtomicLong reds = new AtomicLong();
+        lights.forEach((id, light) -> {
+            if (light == Red.class) reds.incrementAndGet();
+        });
+        assertEquals(100_000, reds.get());
+        assertEquals(100_000, lights.count(Green.class));
+    }
+
+    @Test
+    public void hands_out_only_flyweight_instances() {
+        StateStore<APlusB> matches = new StateStore<>(APlusB.class);
+        matches.put(1, A.class);
+        assertSame(matches.get(1), matches.get(1));
+
+        StateStore<TrafficLight> lights = new StateStore<>(TrafficLight.class);
+        lights.put(1, Green.class);
+        try {
+            lights.get(1);
+            fail("TrafficLight states are not flyweights");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("Green"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refuses_states_whose_fields_it_would_lose() {
+        new StateStore<>(FlyweightExample.Door.class).put(1, new FlyweightExample.Locked());
+    }
+
+    @Test
+    public void stores_inner_class_states() {
+        StateMachineExample example = new StateMachineExample();
+        example.failureLog = mock(Logger.class);
+        StateStore<OrderStatus> orders = new StateStore<>(OrderStatus.class);
+        orders.put(1, Failed.class);
+        orders.put(2, Purchased.class);
+
+        assertEquals(Failed.class, orders.type(1));
+        assertFalse(orders.tryTransition(1, Refunded::new));
+        assertTrue(orders.tryTransition(2, () -> example.new Failed()));
+        verify(example.failureLog).warning("Oh bother! failed from Purchased");
+        assertEquals(2, orders.count(Failed.class));
+        try {
+            orders.get(1);
+            fail("Failed has no shared instance");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("Failed"));
+        }
+    }
+}
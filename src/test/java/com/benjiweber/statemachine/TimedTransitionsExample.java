@@ -0,0 +1,106 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.StateMachineExample.*;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class TimedTransitionsExample {
+
+    long now = 1_000_000;
+    StateMachineExample machine = machine();
+    StateStore<OrderStatus> orders = new StateStore<>(OrderStatus.class);
+    TimedTransitions<OrderStatus> timeouts = TimedTransitions.builder(orders)
+        .clock(() -> now)
+        .tick(Duration.ofSeconds(1))
+        .after(CheckingOut.class, Duration.ofMinutes(30), Cancelled::new)
+        .after(Purchased.class, Duration.ofHours(48), () -> machine.new Failed())
+        .build();
+
+    static StateMachineExample machine() {
+        StateMachineExample machine = new StateMachineExample();
+        machine.failureLog = mock(Logger.class);
+        return machine;
+    }
+
+    @Test
+    public void expires_entities_left_in_a_state() {
+        orders.put(1, Pending.class);
+        orders.put(2, Pending.class);
+        timeouts.tryTransition(1, CheckingOut::new);
+        now += Duration.ofMinutes(10).toMillis();
+        timeouts.tryTransition(2, CheckingOut::new);
+
+        now += Duration.ofMinutes(20).toMillis() - 1;
+        assertEquals(0, timeouts.advance());
+        now += 1;
+        assertEquals(1, timeouts.advance());
+        assertEquals(Cancelled.class, orders.type(1));
+        assertEquals(CheckingOut.class, orders.type(2));
+
+        now += Duration.ofMinutes(10).toMillis();
+        assertEquals(1, timeouts.advance());
+        assertEquals(Cancelled.class, orders.type(2));
+        assertEquals(0, timeouts.pending());
+    }
+
+    @Test
+    public void leaving_the_state_cancels_the_timeout() {
+        orders.put(1, Pending.class);
+        timeouts.tryTransition(1, CheckingOut::new);
+        assertTrue(timeouts.isScheduled(1));
+        timeouts.tryTransition(1, Purchased::new);
+        assertEquals(1, timeouts.pending());
+
+        now += Duration.ofHours(1).toMillis();
+        assertEquals(0, timeouts.advance());
+        assertEquals(Purchased.class, orders.type(1));
+
+        timeouts.tryTransition(1, Shipped::new);
+        assertFalse(timeouts.isScheduled(1));
+        now += Duration.ofDays(3).toMillis();
+        assertEquals(0, timeouts.advance());
+        assertEquals(Shipped.class, orders.type(1));
+    }
+
+    @Test
+    public void timeouts_chain_through_states() {
+        orders.put(7, Pending.class);
+        timeouts.tryTransition(7, CheckingOut::new);
+        orders.put(7, Purchased.class);
+        timeouts.entered(7);
+
+        now += Duration.ofHours(48).toMillis();
+        assertEquals(1, timeouts.advance());
+        assertEquals(Failed.class, orders.type(7));
+        verify(machine.failureLog).warning("Oh bother! failed from Purchased");
+    }
+
+    @Test
+    public void long_delays_cascade_through_the_wheel() {
+        TimedTransitions<OrderStatus> fine = TimedTransitions.builder(orders)
+            .clock(() -> now)
+            .tick(Duration.ofMillis(1))
+            .after(CheckingOut.class, Duration.ofDays(30), Cancelled::new)
+            .build();
+        Random random = new Random(42);
+        for (int id = 0; id < 10_000; id++) {
+            orders.put(id, Pending.class);
+            fine.tryTransition(id, CheckingOut::new);
+            now += random.nextInt(1_000);
+        }
+        int cancelled = 0;
+        for (int step = 0; step < 40; step++) {
+            now += Duration.ofDays(1).toMillis();
+            cancelled += fine.advance();
+        }
+        assertEquals(10_000, cancelled);
+        assertEquals(10_000, orders.count(Cancelled.class));
+    }
+}
@@ -0,0 +1,95 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.TrafficLightExample.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TransitionJournalExample {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replays_transitions_into_a_store() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (TransitionJournal journal = TransitionJournal.open(directory, 100)) {
+            for (long id = 0; id < 1_000; id++) {
+                journal.append(id, new Green(), new SolidAmber());
+            }
+            long last = journal.append(42, new SolidAmber(), new Red());
+            journal.sync(last);
+        }
+
+        StateStore<TrafficLight> lights = new StateStore<>(TrafficLight.class);
+        TransitionJournal.replay(directory, lights);
+
+        assertEquals(1_000, lights.size());
+        assertEquals(SolidAmber.class, lights.type(0));
+        assertEquals(Red.class, lights.type(42));
+    }
+
+    @Test
+    public void continues_after_reopening() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (TransitionJournal journal = TransitionJournal.open(directory, 8)) {
+            for (int i = 0; i < 5; i++) journal.append(i, 0, 1, i);
+        }
+        try (TransitionJournal journal = TransitionJournal.open(directory, 8)) {
+            for (int i = 5; i < 20; i++) journal.append(i, 0, 1, i);
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        TransitionJournal.replay(directory, (entityId, from, to, timestamp) -> {
+            assertEquals(next.getAndIncrement(), entityId);
+            assertEquals(entityId, timestamp);
+            assertEquals(1, to);
+        });
+        assertEquals(20, next.get());
+    }
+
+    @Test
+    public void sequence_numbers_continue_after_reopening() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (TransitionJournal journal = TransitionJournal.open(directory, 8)) {
+            for (int i = 0; i < 19; i++) journal.append(i, 0, 1, i);
+        }
+        try (TransitionJournal journal = TransitionJournal.open(directory, 8)) {
+            assertEquals(20, journal.append(19, 0, 1, 19));
+        }
+    }
+
+    @Test
+    public void stale_entries_after_a_torn_write_are_not_replayed() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (TransitionJournal journal = TransitionJournal.open(directory, 8)) {
+            for (int i = 0; i < 5; i++) journal.append(i, 0, 1, i);
+        }
+        Path segment;
+        try (var files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), TransitionJournal.HEADER_SIZE + 2 * TransitionJournal.ENTRY_SIZE + 20);
+        }
+
+        try (TransitionJournal journal = TransitionJournal.open(directory, 8)) {
+            assertEquals(3, journal.append(100, 0, 1, 100));
+        }
+
+        List<Long> replayed = new ArrayList<>();
+        TransitionJournal.replay(directory, (entityId, from, to, timestamp) -> replayed.add(entityId));
+        assertEquals(List.of(0L, 1L, 100L), replayed);
+    }
+}
@@ -0,0 +1,79 @@
+package com.benjiweber.statemachine;
+
+import com.benjiweber.statemachine.TrafficLightExample.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TransitionMetricsExample {
+
+    @Test
+    @SuppressWarnings("try") // the registration is only held open for the block
+    public void counts_transitions_and_rejections() {
+        TransitionMetrics<TrafficLight> metrics = new TransitionMetrics<>(TrafficLight.class);
+        try (var registration = metrics.register()) {
+            TrafficLight light = new Green();
+            light = light.tryTransition(SolidAmber::new).unchecked();
+            light = light.transitionOrSame(Green::new);
+            new Green().transition(SolidAmber::new).transition(Red::new);
+        }
+        new Green().transition(SolidAmber::new);
+
+        TransitionMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.transitions(Green.class, SolidAmber.class));
+        assertEquals(1, snapshot.transitions(SolidAmber.class, Red.class));
+        assertEquals(1, snapshot.rejections(SolidAmber.class, Green.class));
+        assertEquals(3, snapshot.guardLatency().count());
+        assertEquals(2L, (long) snapshot.counters().get("transitions.Green->SolidAmber"));
+    }
+
+    @Test
+    @SuppressWarnings("try") // the registration is only held open for the block
+    public void global_listeners_see_every_machine() {
+        List<String> seen = new ArrayList<>();
+        TransitionListener listener = new TransitionListener() {
+            public void onTransition(State<?> from, State<?> to, long guardNanos) {
+                seen.add(from.name() + "->" + to.name());
+            }
+        };
+        try (var registration = TransitionListeners.register(listener)) {
+            new Green().transition(SolidAmber::new);
+            new AtomicStateExample.Off().transition(AtomicStateExample.On::new);
+        }
+        new Green().transition(SolidAmber::new);
+
+        assertEquals(List.of("Green->SolidAmber", "Off->On"), seen);
+    }
+
+    @Test
+    public void histogram_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count());
+        assertEquals(1_000_000, snapshot.max());
+        long median = snapshot.percentile(50);
+        assertTrue(median >= 500_000 && median <= 500_000 * 1.125);
+    }
+
+    @Test
+    public void histogram_snapshots_merge() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            fast.record(100);
+        }
+        slow.record(1_000_000);
+
+        LatencyHistogram.Snapshot merged = fast.snapshot().merge(slow.snapshot());
+        assertEquals(100, merged.count());
+        assertEquals(1_000_000, merged.max());
+        assertTrue(merged.percentile(99) <= 112);
+        assertEquals(1_000_000, merged.percentile(100));
+    }
+}